@@ -0,0 +1,25 @@
+package com.example.availabilityservice;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Defers side effects on in-memory state until the surrounding transaction has committed. */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /** Runs {@code action} after commit, or immediately when no transaction is active. */
+    static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
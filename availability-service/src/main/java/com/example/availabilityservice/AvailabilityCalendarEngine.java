@@ -0,0 +1,460 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory availability calendar ({@code availability.engine.enabled=true}).
+ * <p>
+ * Each room is two {@code int} arrays (total and booked rooms) indexed by epoch-day offset from the
+ * window origin, covering {@code past-days} before today through {@code horizon-days} ahead. Updates are
+ * lock-free CAS increments; {@link #remaining(String, long)} reads without allocating. A total of 0
+ * means "no row yet", matching the lazily created rows of the table.
+ * <p>
+ * Only the nights inside the window live here; the caller writes the rest of a stay to the table
+ * directly ({@link #pin}). Once a day the window slides forward ({@link #slide}): the new tail days
+ * were never in memory, so they are loaded from the table, which holds every write to them.
+ * <p>
+ * Durability: each event appends one row per stay to {@code engine_journal} in the transaction that
+ * records its stream ID as processed ({@link #journal}), and the arrays are updated after commit.
+ * The write-behind job moves journal rows into {@code availability} as coalesced deltas (never
+ * absolute values, so other writers of the table are not overwritten) and deletes them in the same
+ * transaction. Nothing acknowledged can be lost: after a crash the calendar is reloaded from the
+ * table plus the journal.
+ * <p>
+ * Startup loads a memory-mapped snapshot if the previous run shut down cleanly with an empty
+ * journal (the snapshot is then consumed, so a crash forces a reload); otherwise it loads from the
+ * table and journal. The engine starts before, and stops after, the stream consumers.
+ */
+@Component
+class AvailabilityCalendarEngine implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityCalendarEngine.class);
+    private static final int SNAPSHOT_MAGIC = 0x41564331; // "AVC1"
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate loadTx;
+    private final NightDeltaWriter nightDeltas;
+    private final AvailabilityMetrics metrics;
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final int flushBatchSize;
+    private final int pastDays;
+    private final int capacity;
+
+    /** Held shared by writers from {@link #pin} until their transaction completes, exclusively by {@link #slide}. */
+    private final ReentrantReadWriteLock sliding = new ReentrantReadWriteLock();
+    private volatile Window window;
+    private volatile boolean running;
+
+    AvailabilityCalendarEngine(JdbcTemplate jdbc,
+            PlatformTransactionManager txManager,
+            NightDeltaWriter nightDeltas,
+            AvailabilityMetrics metrics,
+            @Value("${availability.engine.enabled:false}") boolean enabled,
+            @Value("${availability.engine.snapshot-path:availability-calendar.snap}") Path snapshotPath,
+            @Value("${availability.engine.past-days:30}") int pastDays,
+            @Value("${availability.engine.horizon-days:730}") int horizonDays,
+            @Value("${availability.engine.flush-batch-size:1000}") int flushBatchSize) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.loadTx = new TransactionTemplate(txManager);
+        this.loadTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ); // table + journal as of one instant
+        this.loadTx.setReadOnly(true);
+        this.nightDeltas = nightDeltas;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.snapshotPath = snapshotPath;
+        this.flushBatchSize = flushBatchSize;
+        this.pastDays = pastDays;
+        this.capacity = pastDays + horizonDays;
+        this.window = new Window(LocalDate.now().toEpochDay() - pastDays, new ConcurrentHashMap<>());
+    }
+
+    // region Calendar
+    /** The rooms for {@code capacity} days from {@code originDay}; replaced as a whole when it slides. */
+    private record Window(long originDay, Map<String, RoomCalendar> rooms) {
+    }
+
+    /** The nights [start, end] of a stay. */
+    record Nights(LocalDate start, LocalDate end) {
+    }
+
+    static final class RoomCalendar {
+        final AtomicIntegerArray total;
+        final AtomicIntegerArray booked;
+
+        RoomCalendar(int capacity) {
+            total = new AtomicIntegerArray(capacity);
+            booked = new AtomicIntegerArray(capacity);
+        }
+    }
+
+    /** True once loaded and every day in [start, end] lies inside the in-memory window. */
+    boolean covers(LocalDate start, LocalDate end) {
+        Window w = window;
+        return running && start.toEpochDay() >= w.originDay() && end.toEpochDay() < w.originDay() + capacity;
+    }
+
+    /** The part of [start, end] inside the in-memory window, or null if none (or not loaded). */
+    Nights inWindow(LocalDate start, LocalDate end) {
+        return running ? clip(window, start, end) : null;
+    }
+
+    /**
+     * {@link #inWindow} for a write: keeps the window from sliding until the caller's transaction
+     * completes, so the nights it journals are still in memory when it calls {@link #book} after
+     * commit. Nights outside the result are the caller's to write to the table.
+     */
+    Nights pin(LocalDate start, LocalDate end) {
+        if (!running) {
+            return null;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Engine writes must run in a transaction");
+        }
+        sliding.readLock().lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                sliding.readLock().unlock();
+            }
+        });
+        return inWindow(start, end);
+    }
+
+    private Nights clip(Window w, LocalDate start, LocalDate end) {
+        long from = Math.max(start.toEpochDay(), w.originDay());
+        long to = Math.min(end.toEpochDay(), w.originDay() + capacity - 1);
+        return from > to ? null : new Nights(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(to));
+    }
+
+    /**
+     * Durably records the in-window part of a stay ({@link #pin}) in the caller's transaction, next to
+     * its processed-event row. Call {@link #book} with the same arguments after commit.
+     */
+    void journal(String roomId, LocalDate start, LocalDate end, int delta) {
+        jdbc.update("INSERT INTO availability.engine_journal (room_id, start_date, end_date, delta) VALUES (?, ?, ?, ?)",
+                roomId, Date.valueOf(start), Date.valueOf(end), delta);
+    }
+
+    /**
+     * Adds {@code delta} booked rooms (negative to release, never below zero; what the floor drops
+     * is counted) to every night in [start, end] in memory; missing days get {@code defaultTotal}.
+     */
+    List<LocalDate> book(String roomId, LocalDate start, LocalDate end, int delta, int defaultTotal) {
+        return book(window, roomId, start, end, delta, defaultTotal);
+    }
+
+    private List<LocalDate> book(Window w, String roomId, LocalDate start, LocalDate end, int delta, int defaultTotal) {
+        RoomCalendar cal = w.rooms().computeIfAbsent(roomId, id -> new RoomCalendar(capacity));
+        List<LocalDate> nights = new ArrayList<>();
+        int clamped = 0;
+        for (long day = start.toEpochDay(); day <= end.toEpochDay(); day++) {
+            int i = (int) (day - w.originDay());
+            cal.total.compareAndSet(i, 0, defaultTotal);
+            int before = cal.booked.getAndAccumulate(i, delta, (booked, d) -> Math.max(0, booked + d));
+            clamped += Math.max(0, -(before + delta));
+            nights.add(LocalDate.ofEpochDay(day));
+        }
+        if (clamped > 0) {
+            metrics.clamped("engine", clamped);
+            log.warn("Release below zero booked for room {} from {} to {}: {} room-nights had nothing to release", roomId, start, end, clamped);
+        }
+        return nights;
+    }
+
+    /** Remaining rooms for a day, or -1 if the room has no row for it. Allocation-free. */
+    int remaining(String roomId, long epochDay) {
+        Window w = window;
+        RoomCalendar cal = w.rooms().get(roomId);
+        long i = epochDay - w.originDay();
+        if (cal == null || i < 0 || i >= capacity) {
+            return -1;
+        }
+        int total = cal.total.get((int) i);
+        return total == 0 ? -1 : total - cal.booked.get((int) i);
+    }
+
+    /** Existing days in [start, end] as entities, for the list-shaped API; days outside the window are skipped. */
+    List<Availability> rows(String roomId, LocalDate start, LocalDate end) {
+        Window w = window;
+        RoomCalendar cal = w.rooms().get(roomId);
+        List<Availability> out = new ArrayList<>();
+        if (cal == null) {
+            return out;
+        }
+        long from = Math.max(start.toEpochDay(), w.originDay());
+        long to = Math.min(end.toEpochDay(), w.originDay() + capacity - 1);
+        for (long day = from; day <= to; day++) {
+            int i = (int) (day - w.originDay());
+            int total = cal.total.get(i);
+            if (total != 0) {
+                out.add(new Availability(null, roomId, LocalDate.ofEpochDay(day), total, cal.booked.get(i), null));
+            }
+        }
+        return out;
+    }
+    // endregion
+
+    // region Write-behind
+    @Scheduled(fixedDelayString = "${availability.engine.flush-interval:PT1S}")
+    public void flush() {
+        if (!enabled || !running) {
+            return;
+        }
+        int moved;
+        do {
+            moved = tx.execute(status -> writeBehind(flushBatchSize));
+        } while (moved == flushBatchSize);
+    }
+
+    /**
+     * Takes up to {@code limit} journal rows (oldest first, skipping rows another instance is
+     * writing), adds their coalesced deltas to {@code availability} and deletes them, atomically.
+     */
+    private int writeBehind(int limit) {
+        List<Stay> stays = jdbc.query("""
+                DELETE FROM availability.engine_journal
+                WHERE id IN (SELECT id FROM availability.engine_journal ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+                RETURNING room_id, start_date, end_date, delta
+                """, (rs, n) -> new Stay(rs.getString(1), rs.getDate(2).toLocalDate(), rs.getDate(3).toLocalDate(), rs.getInt(4)),
+                limit);
+        if (!stays.isEmpty()) {
+            nightDeltas.apply(NightDeltaWriter.coalesceStays(stays), AvailabilityService.DEFAULT_TOTAL_ROOMS);
+            log.debug("Wrote behind {} journaled stays", stays.size());
+        }
+        return stays.size();
+    }
+
+    /**
+     * Moves the window so it again starts {@code past-days} before today. Waits for pinned writers,
+     * writes the journal behind (days dropping out of the window are then current in the table),
+     * copies the days both windows share and loads the new tail days from the table.
+     */
+    @Scheduled(fixedDelayString = "${availability.engine.slide-interval:PT1H}")
+    public void slide() {
+        if (!enabled || !running || LocalDate.now().toEpochDay() - pastDays <= window.originDay()) {
+            return;
+        }
+        sliding.writeLock().lock();
+        try {
+            Window old = window;
+            Window moved = new Window(LocalDate.now().toEpochDay() - pastDays, new ConcurrentHashMap<>());
+            flush();
+            int shift = (int) (moved.originDay() - old.originDay()); // old index i + shift is new index i
+            old.rooms().forEach((roomId, cal) -> {
+                RoomCalendar copy = new RoomCalendar(capacity);
+                for (int i = 0; i + shift < capacity; i++) {
+                    copy.total.set(i, cal.total.get(i + shift));
+                    copy.booked.set(i, cal.booked.get(i + shift));
+                }
+                moved.rooms().put(roomId, copy);
+            });
+            long tail = Math.max(moved.originDay(), old.originDay() + capacity);
+            loadTx.executeWithoutResult(status -> loadFromTable(moved, tail, moved.originDay() + capacity));
+            window = moved;
+            log.info("Availability engine window moved {} days to start at {}", shift, LocalDate.ofEpochDay(moved.originDay()));
+        } finally {
+            sliding.writeLock().unlock();
+        }
+    }
+
+    private long journalSize() {
+        Long n = jdbc.queryForObject("SELECT count(*) FROM availability.engine_journal", Long.class);
+        return n == null ? 0 : n;
+    }
+    // endregion
+
+    // region Load / snapshot
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        boolean fromSnapshot = false;
+        if (Files.exists(snapshotPath)) {
+            // the snapshot only matches the table when nothing was left in the journal at shutdown
+            fromSnapshot = journalSize() == 0 && loadSnapshot();
+            consumeSnapshot();
+        }
+        if (!fromSnapshot) {
+            Window w = window;
+            loadTx.executeWithoutResult(status -> loadFromTable(w, w.originDay(), w.originDay() + capacity));
+        }
+        running = true;
+        slide(); // the window was placed at construction; catch up if the day changed since
+        log.info("Availability engine loaded {} rooms from {} in {} ms", window.rooms().size(),
+                fromSnapshot ? "snapshot" : "table", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Final write-behind failed, the journal is replayed on next start: {}", e.toString());
+        }
+        running = false;
+        if (journalSize() > 0) {
+            log.warn("Journal not empty at shutdown; skipping snapshot {}", snapshotPath);
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            log.warn("Failed to write availability snapshot {}: {}", snapshotPath, e.toString());
+        }
+    }
+
+    /** Before the stream consumers on start, after them on stop. */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Loads the days [fromDay, toDay) of {@code w} from the table plus the journal. */
+    private void loadFromTable(Window w, long fromDay, long toDay) {
+        if (fromDay >= toDay) {
+            return;
+        }
+        jdbc.query("""
+                SELECT room_id, available_date, total_rooms, booked_rooms
+                FROM availability.availability
+                WHERE available_date >= ? AND available_date < ?
+                """, rs -> {
+            RoomCalendar cal = w.rooms().computeIfAbsent(rs.getString(1), id -> new RoomCalendar(capacity));
+            int i = (int) (rs.getDate(2).toLocalDate().toEpochDay() - w.originDay());
+            cal.total.set(i, rs.getInt(3));
+            cal.booked.set(i, rs.getInt(4));
+        }, Date.valueOf(LocalDate.ofEpochDay(fromDay)), Date.valueOf(LocalDate.ofEpochDay(toDay)));
+        // acknowledged events the write-behind had not moved yet
+        jdbc.query("SELECT room_id, start_date, end_date, delta FROM availability.engine_journal ORDER BY id", rs -> {
+            LocalDate start = LocalDate.ofEpochDay(Math.max(rs.getDate(2).toLocalDate().toEpochDay(), fromDay));
+            LocalDate end = LocalDate.ofEpochDay(Math.min(rs.getDate(3).toLocalDate().toEpochDay(), toDay - 1));
+            if (!start.isAfter(end)) {
+                book(w, rs.getString(1), start, end, rs.getInt(4), AvailabilityService.DEFAULT_TOTAL_ROOMS);
+            }
+        });
+    }
+
+    /**
+     * Layout: magic, originDay, capacity, roomCount, then per room a length-prefixed UTF-8 id
+     * followed by {@code capacity} totals and {@code capacity} booked counts.
+     */
+    private void writeSnapshot() throws IOException {
+        Window w = window;
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(w.originDay());
+            out.writeInt(capacity);
+            out.writeInt(w.rooms().size());
+            for (var e : w.rooms().entrySet()) {
+                byte[] id = e.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                for (int i = 0; i < capacity; i++) {
+                    out.writeInt(e.getValue().total.get(i));
+                }
+                for (int i = 0; i < capacity; i++) {
+                    out.writeInt(e.getValue().booked.get(i));
+                }
+            }
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote availability snapshot for {} rooms to {}", w.rooms().size(), snapshotPath);
+    }
+
+    private boolean loadSnapshot() {
+        try (FileChannel ch = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != SNAPSHOT_MAGIC) {
+                return false;
+            }
+            Window w = window;
+            long snapOrigin = buf.getLong();
+            int snapCapacity = buf.getInt();
+            int roomCount = buf.getInt();
+            int shift = (int) (snapOrigin - w.originDay()); // snapshot index i maps to our index i + shift
+            int[] totals = new int[snapCapacity];
+            int[] booked = new int[snapCapacity];
+            for (int r = 0; r < roomCount; r++) {
+                byte[] id = new byte[buf.getShort()];
+                buf.get(id);
+                buf.asIntBuffer().get(totals);
+                buf.position(buf.position() + snapCapacity * 4);
+                buf.asIntBuffer().get(booked);
+                buf.position(buf.position() + snapCapacity * 4);
+
+                RoomCalendar cal = new RoomCalendar(capacity);
+                for (int i = Math.max(0, -shift); i < snapCapacity && i + shift < capacity; i++) {
+                    cal.total.set(i + shift, totals[i]);
+                    cal.booked.set(i + shift, booked[i]);
+                }
+                w.rooms().put(new String(id, StandardCharsets.UTF_8), cal);
+            }
+            // days the snapshot's window did not have were only ever written to the table
+            long snapEnd = snapOrigin + snapCapacity;
+            loadTx.executeWithoutResult(status -> {
+                loadFromTable(w, w.originDay(), Math.min(snapOrigin, w.originDay() + capacity));
+                loadFromTable(w, Math.max(snapEnd, w.originDay()), w.originDay() + capacity);
+            });
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable availability snapshot {}: {}", snapshotPath, e.toString());
+            window.rooms().clear();
+            return false;
+        } finally {
+            consumeSnapshot();
+        }
+        return true;
+    }
+
+    /** A snapshot is only valid right after a clean shutdown; drop it once read. */
+    private void consumeSnapshot() {
+        try {
+            Files.deleteIfExists(snapshotPath);
+        } catch (IOException e) {
+            log.warn("Could not delete consumed snapshot {}: {}", snapshotPath, e.toString());
+        }
+    }
+    // endregion
+}
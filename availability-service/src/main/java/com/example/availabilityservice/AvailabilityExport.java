@@ -0,0 +1,205 @@
+package com.example.availabilityservice;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// region Exporter
+/**
+ * Streams availability rows as NDJSON, one object per line, straight from a forward-only JDBC cursor.
+ * <p>
+ * Rows come out in {@code (room_id, available_date)} order and are written as they are fetched, so
+ * memory stays at one fetch window however long the range is. When {@code limit} is given and
+ * reached, a final {@code {"next":"<cursor>"}} line carries a keyset token; passing it back as
+ * {@code cursor} resumes right after the last row sent.
+ */
+@Component
+class AvailabilityExporter {
+
+    /** Last row sent: {@code (room_id, available_date)}. Encoded as URL-safe base64 of {@code date|roomId}. */
+    record Cursor(String roomId, LocalDate date) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((date + "|" + roomId).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 2);
+                return new Cursor(parts[1], LocalDate.parse(parts[0]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+    private final int flushEvery;
+    private final boolean intervals;
+
+    AvailabilityExporter(DataSource dataSource,
+            PlatformTransactionManager txManager,
+            ObjectMapper objectMapper,
+            @Value("${availability.export.fetch-size:1000}") int fetchSize,
+            @Value("${availability.storage:daily}") String storage) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize); // PostgreSQL only uses a cursor with a fetch size inside a transaction
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.flushEvery = fetchSize;
+        this.intervals = "interval".equals(storage);
+    }
+
+    /** Writes the rows of [startDate, endDate] (one room, or all when {@code roomId} is null) to {@code out}. */
+    void export(String roomId, LocalDate startDate, LocalDate endDate, Cursor after, Integer limit, OutputStream out) {
+        StringBuilder sql = new StringBuilder("SELECT room_id, available_date, total_rooms, booked_rooms FROM ");
+        List<Object> args = new ArrayList<>();
+        if (intervals) {
+            // one row per night of every run overlapping the range
+            sql.append("""
+                    (SELECT i.room_id, CAST(d AS date) AS available_date, i.total_rooms, i.booked_rooms
+                     FROM availability.availability_interval i
+                     CROSS JOIN generate_series(GREATEST(i.start_date, ?), LEAST(i.end_date, ?), INTERVAL '1 day') AS d
+                     WHERE i.start_date <= ? AND i.end_date >= ?) AS a
+                    """);
+            args.addAll(List.of(Date.valueOf(startDate), Date.valueOf(endDate), Date.valueOf(endDate), Date.valueOf(startDate)));
+        } else {
+            sql.append("availability.availability");
+        }
+        sql.append(" WHERE available_date BETWEEN ? AND ?");
+        args.addAll(List.of(Date.valueOf(startDate), Date.valueOf(endDate)));
+        if (roomId != null) {
+            sql.append(" AND room_id = ?");
+            args.add(roomId);
+        }
+        if (after != null) {
+            sql.append(" AND (room_id, available_date) > (?, ?)");
+            args.add(after.roomId());
+            args.add(Date.valueOf(after.date()));
+        }
+        sql.append(" ORDER BY room_id, available_date");
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+
+        readOnlyTx.executeWithoutResult(status -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.setRootValueSeparator(new SerializedString("\n"));
+                int[] sent = { 0 };
+                Cursor[] last = { null };
+                jdbc.query(sql.toString(), rs -> {
+                    String room = rs.getString(1);
+                    LocalDate date = rs.getDate(2).toLocalDate();
+                    try {
+                        json.writeStartObject();
+                        json.writeStringField("roomId", room);
+                        json.writeStringField("date", date.toString());
+                        json.writeNumberField("totalRooms", rs.getInt(3));
+                        json.writeNumberField("bookedRooms", rs.getInt(4));
+                        json.writeEndObject();
+                        if (++sent[0] % flushEvery == 0) {
+                            json.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e); // client went away; abandons the cursor
+                    }
+                    last[0] = new Cursor(room, date);
+                }, args.toArray());
+
+                if (limit != null && sent[0] == limit) {
+                    json.writeStartObject();
+                    json.writeStringField("next", last[0].encode());
+                    json.writeEndObject();
+                }
+                if (sent[0] > 0) {
+                    json.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
+// endregion
+
+// region Web
+@RestController
+@RequestMapping("/api/availability")
+@Validated
+class AvailabilityExportController {
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final AvailabilityExporter exporter;
+    private final Duration timeout;
+
+    AvailabilityExportController(AvailabilityExporter exporter,
+            @Value("${availability.export.timeout:30m}") Duration timeout) {
+        this.exporter = exporter;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Full-calendar pull for channel managers; omit {@code roomId} to export every room. The body is
+     * written asynchronously with {@code availability.export.timeout} instead of the app-wide async
+     * request timeout, which stays short for every other endpoint.
+     */
+    @GetMapping("/export")
+    ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) String roomId,
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @Min(1) @Max(1_000_000) Integer limit,
+            HttpServletRequest request) {
+
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must be on or after startDate");
+        }
+        AvailabilityExporter.Cursor after = cursor == null ? null : AvailabilityExporter.Cursor.decode(cursor);
+        StreamingResponseBody body = out -> exporter.export(roomId, startDate, endDate, after, limit, out);
+        AsyncWebRequest async = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (async != null) {
+            async.setTimeout(timeout.toMillis()); // applies when the streaming body starts, for this request only
+        }
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
+// endregion
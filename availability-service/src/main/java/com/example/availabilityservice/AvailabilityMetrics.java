@@ -0,0 +1,177 @@
+package com.example.availabilityservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the consume and query paths, scraped at {@code /actuator/prometheus}.
+ * <ul>
+ * <li>{@code availability.stream.lag} / {@code .pending}: entries not yet delivered to the group and
+ * delivered but unacknowledged, from {@code XINFO GROUPS} polled every {@code lag-poll-interval}</li>
+ * <li>{@code availability.event.processing{outcome}}: per-event apply time (histogram)</li>
+ * <li>{@code availability.event.batch}: time to apply one batch in {@code batch} mode</li>
+ * <li>{@code availability.event.conflicts{room}} / {@code .failures{room}}: events rejected by the
+ * unique index because another consumer won the race, and events that failed and stay pending</li>
+ * <li>{@code availability.event.batch.fallbacks}: events re-applied one by one after a failed batch</li>
+ * <li>{@code availability.db.query{query}}: database reads behind {@code checkAvailability}</li>
+ * <li>{@code availability.booked.clamped{path}}: booked rooms a release would have taken below zero
+ * and that the floor dropped instead ({@code event}, {@code batch} or {@code engine}); any count means
+ * events arrived out of order or the projection drifted</li>
+ * <li>{@code availability.propagation}: booking-service publish to our commit, i.e. how long a booking
+ * takes to show up in {@code GET /api/availability} (histogram)</li>
+ * <li>{@code availability.freshness.watermark{consumer}} / {@code availability.staleness{consumer}}:
+ * publish time of the newest applied event, and how far behind now that is while events are still
+ * waiting (0 once the group has nothing undelivered or pending)</li>
+ * </ul>
+ */
+@Component
+class AvailabilityMetrics {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityMetrics.class);
+
+    private final MeterRegistry registry;
+    private final StringRedisTemplate redis;
+    private final Timer applied;
+    private final Timer duplicate;
+    private final Timer failed;
+    private final Timer batch;
+    private final Counter batchFallbacks;
+    private final Timer propagation;
+    private final AtomicLong lag = new AtomicLong(-1);
+    private final AtomicLong pending = new AtomicLong(-1);
+    private final AtomicLong watermark = new AtomicLong(-1);
+
+    AvailabilityMetrics(MeterRegistry registry, StringRedisTemplate redis) {
+        this.registry = registry;
+        this.redis = redis;
+        this.applied = processingTimer("applied");
+        this.duplicate = processingTimer("duplicate");
+        this.failed = processingTimer("failed");
+        this.batch = Timer.builder("availability.event.batch")
+                .description("Time to apply one batch of stream events")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.batchFallbacks = Counter.builder("availability.event.batch.fallbacks")
+                .description("Events re-applied individually after their batch failed")
+                .register(registry);
+        this.propagation = Timer.builder("availability.propagation")
+                .description("Booking event publish to availability commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("availability.freshness.watermark", watermark, w -> w.get() < 0 ? Double.NaN : w.get() / 1000.0)
+                .description("Publish time (epoch seconds) of the newest applied booking event")
+                .tag("consumer", RedisStreamConfig.CONSUMER)
+                .register(registry);
+        Gauge.builder("availability.staleness", this, AvailabilityMetrics::stalenessSeconds)
+                .description("Seconds the applied state trails the stream while events are waiting")
+                .tag("consumer", RedisStreamConfig.CONSUMER)
+                .register(registry);
+        Gauge.builder("availability.stream.lag", lag, AvailabilityMetrics::unknownAsNaN)
+                .description("Stream entries not yet delivered to the consumer group")
+                .register(registry);
+        Gauge.builder("availability.stream.pending", pending, AvailabilityMetrics::unknownAsNaN)
+                .description("Entries delivered to the consumer group but not acknowledged")
+                .register(registry);
+    }
+
+    private Timer processingTimer(String outcome) {
+        return Timer.builder("availability.event.processing")
+                .description("Time to apply one stream event")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    void eventApplied(long startNanos) {
+        applied.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void eventConflict(long startNanos, String roomId) {
+        duplicate.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        registry.counter("availability.event.conflicts", "room", roomId).increment();
+    }
+
+    void eventFailed(long startNanos, String roomId) {
+        failed.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        registry.counter("availability.event.failures", "room", roomId).increment();
+    }
+
+    void batchApplied(long startNanos) {
+        batch.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void batchFallback(int events) {
+        batchFallbacks.increment(events);
+    }
+
+    void clamped(String path, int rooms) {
+        registry.counter("availability.booked.clamped", "path", path).increment(rooms);
+    }
+
+    /** Records publish-to-commit latency of an applied event; call after commit. */
+    void propagated(BookingEvent event) {
+        Long publishedAt = event.getPublishedAt();
+        if (publishedAt == null) {
+            return; // published before timestamps were added
+        }
+        long now = System.currentTimeMillis();
+        propagation.record(Math.max(0, now - publishedAt), TimeUnit.MILLISECONDS);
+        watermark.accumulateAndGet(publishedAt, Math::max);
+    }
+
+    private double stalenessSeconds() {
+        long mark = watermark.get();
+        if (mark < 0) {
+            return Double.NaN;
+        }
+        if (lag.get() == 0 && pending.get() == 0) {
+            return 0; // caught up: nothing published is missing from our state
+        }
+        return Math.max(0, System.currentTimeMillis() - mark) / 1000.0;
+    }
+
+    /** Times a database read; {@code query} names it in the {@code availability.db.query} timer. */
+    <T> T timeQuery(String query, Supplier<T> read) {
+        return registry.timer("availability.db.query", "query", query).record(read);
+    }
+
+    /** Reads lag and pending for our group from XINFO GROUPS ({@code lag} needs Redis 7+). */
+    @Scheduled(fixedDelayString = "${availability.metrics.lag-poll-interval:PT5S}")
+    public void pollConsumerLag() {
+        try {
+            StreamInfo.XInfoGroups groups = redis.execute((RedisCallback<StreamInfo.XInfoGroups>) (RedisConnection c) ->
+                    c.streamCommands().xInfoGroups(RedisStreamConfig.STREAM.getBytes(StandardCharsets.UTF_8)));
+            if (groups == null) {
+                return;
+            }
+            groups.forEach(group -> {
+                if (RedisStreamConfig.GROUP.equals(group.groupName())) {
+                    pending.set(group.pendingCount());
+                    Object groupLag = group.getRaw().get("lag");
+                    lag.set(groupLag instanceof Number n ? n.longValue() : -1);
+                }
+            });
+        } catch (Exception e) {
+            log.debug("Could not read consumer group info: {}", e.toString());
+        }
+    }
+
+    private static double unknownAsNaN(AtomicLong value) {
+        long v = value.get();
+        return v < 0 ? Double.NaN : v;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.availabilityservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// region Cache
+/**
+ * Bounded, TTL-evicted near cache of per-room-day availability for {@code checkAvailability}.
+ * <p>
+ * Days without a row are cached as {@code Optional.empty()} so a range is a hit only if every day
+ * in it is cached. Writers invalidate exactly the room-days they touched after commit, and the
+ * invalidation is broadcast on {@value #CHANNEL} so other instances drop theirs too; the TTL bounds
+ * staleness if a broadcast is lost.
+ */
+@Component
+class AvailabilityNearCache {
+    static final String CHANNEL = "availability-invalidations";
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityNearCache.class);
+
+    record RoomDay(String roomId, LocalDate date) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final Cache<RoomDay, Optional<Availability>> cache;
+    private final AtomicLong invalidations = new AtomicLong(); // guards against caching a load that raced an invalidation
+
+    AvailabilityNearCache(StringRedisTemplate redis,
+            MeterRegistry meterRegistry,
+            @Value("${availability.cache.enabled:true}") boolean enabled,
+            @Value("${availability.cache.max-room-days:100000}") long maxRoomDays,
+            @Value("${availability.cache.ttl:30s}") Duration ttl) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxRoomDays)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "availability.near");
+    }
+
+    /** Returns the cached rows for the range, or loads and caches the whole range on any miss. */
+    List<Availability> getRange(String roomId, LocalDate start, LocalDate end, Supplier<List<Availability>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        List<Availability> rows = new ArrayList<>();
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            Optional<Availability> cached = cache.getIfPresent(new RoomDay(roomId, d));
+            if (cached == null) {
+                return loadRange(roomId, start, end, loader);
+            }
+            cached.ifPresent(rows::add);
+        }
+        return rows;
+    }
+
+    private List<Availability> loadRange(String roomId, LocalDate start, LocalDate end,
+            Supplier<List<Availability>> loader) {
+        long generation = invalidations.get();
+        List<Availability> loaded = loader.get();
+        if (generation == invalidations.get()) {
+            for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+                cache.put(new RoomDay(roomId, d), Optional.empty());
+            }
+            loaded.forEach(a -> cache.put(new RoomDay(a.getRoomId(), a.getAvailableDate()), Optional.of(a)));
+        }
+        return loaded;
+    }
+
+    /** Drops the room-days locally and tells the other instances to do the same. */
+    void invalidateAndBroadcast(String roomId, LocalDate start, LocalDate end) {
+        invalidate(roomId, start, end);
+        if (!enabled) {
+            return;
+        }
+        try {
+            redis.convertAndSend(CHANNEL, start + "|" + end + "|" + roomId);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast cache invalidation for {}: {}", roomId, e.toString());
+        }
+    }
+
+    void invalidate(String roomId, LocalDate start, LocalDate end) {
+        invalidations.incrementAndGet();
+        List<RoomDay> keys = new ArrayList<>();
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            keys.add(new RoomDay(roomId, d));
+        }
+        cache.invalidateAll(keys);
+    }
+
+    /** Drops every entry on this instance, e.g. after the projection was rebuilt underneath it. */
+    void clear() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /** Applies an invalidation received from another instance ({@code start|end|roomId}). */
+    void onBroadcast(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed invalidation '{}'", message);
+            return;
+        }
+        invalidate(parts[2], LocalDate.parse(parts[0]), LocalDate.parse(parts[1]));
+    }
+}
+// endregion
+
+// region Invalidation fan-out
+@Configuration
+@ConditionalOnProperty(name = "availability.cache.enabled", havingValue = "true", matchIfMissing = true)
+class AvailabilityNearCacheConfig {
+
+    /** Subscribes to invalidations published by any instance (including this one, which is harmless). */
+    @Bean
+    RedisMessageListenerContainer nearCacheInvalidationListener(RedisConnectionFactory cf,
+            AvailabilityNearCache nearCache) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(cf);
+        container.addMessageListener(
+                (message, pattern) -> nearCache.onBroadcast(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(AvailabilityNearCache.CHANNEL));
+        return container;
+    }
+}
+// endregion
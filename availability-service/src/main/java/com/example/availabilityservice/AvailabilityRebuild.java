@@ -0,0 +1,562 @@
+package com.example.availabilityservice;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// region Rebuilder
+/**
+ * Rebuilds the availability projection in bulk instead of replaying events one transaction at a time.
+ * <p>
+ * Stays are read either from the booking table ({@code bookings}, in one REPEATABLE READ snapshot)
+ * or from the stream ({@code stream}) and counted per room-night by
+ * {@code availability.rebuild.workers} threads, each owning a hash partition of the rooms. Each
+ * worker loads its counts into an UNLOGGED shadow table with {@code COPY}. One transaction then
+ * swaps the shadow contents into {@code availability} and resets {@code processed_event}. Finally
+ * the consumer group is moved to the last stream entry already reflected, so newer events apply
+ * normally.
+ * <p>
+ * The swap is not a table rename: {@code availability} is partitioned and referenced by its
+ * partitions, so it is truncated and refilled from the shadow table under an ACCESS EXCLUSIVE lock
+ * (keeping existing {@code total_rooms}). Reads and writes wait for that one transaction. Only nights
+ * from the oldest attached month partition on are replaced: months that retention already detached
+ * ({@code availability.partitions.retain-months}) are not rebuilt, as they would land in the default
+ * partition, and rows older than that in the default partition are left as they are.
+ * <p>
+ * For {@code bookings}, events written after the captured stream position whose booking is already
+ * in the snapshot are recorded as processed, so they are not counted twice. {@code stream} replaces
+ * the whole table too, so it replays from the first entry ever written and is refused once anything
+ * was trimmed or deleted from the stream (booking-service retention does that; rebuild from
+ * {@code bookings} then). Copies of an event re-sent by the outbox relay (same booking and event
+ * type) are counted once.
+ * <p>
+ * The live consumer keeps running. Whatever it applies before the swap is overwritten and delivered
+ * again after the group is moved back; whatever it applies after the swap is already recorded in
+ * {@code processed_event} and skipped on redelivery.
+ */
+@Component
+class AvailabilityRebuilder {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityRebuilder.class);
+    private static final String SHADOW = "availability.availability_rebuild";
+    private static final int CHUNK = 1024;
+    private static final int DEFAULT_TOTAL_ROOMS = 5;
+
+    enum Source { BOOKINGS, STREAM }
+
+    record Result(Source source, long stays, long roomNights, String streamPosition, int skippedEvents, long millis) {
+    }
+
+    private record Stay(String roomId, long startDay, long endDay, int delta) {
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate snapshotTx;
+    private final TransactionTemplate swapTx;
+    private final StringRedisTemplate redis;
+    private final ProcessedEventFilter processedEvents;
+    private final AvailabilityNearCache nearCache;
+    private final boolean engineEnabled;
+    private final boolean intervalStorage;
+    private final int workerCount;
+    private final String bookingsTable;
+    private final ReentrantLock oneAtATime = new ReentrantLock();
+
+    AvailabilityRebuilder(DataSource dataSource,
+            PlatformTransactionManager txManager,
+            StringRedisTemplate redis,
+            ProcessedEventFilter processedEvents,
+            AvailabilityNearCache nearCache,
+            @Value("${availability.engine.enabled:false}") boolean engineEnabled,
+            @Value("${availability.storage:daily}") String storage,
+            @Value("${availability.rebuild.workers:4}") int workerCount,
+            @Value("${availability.rebuild.fetch-size:10000}") int fetchSize,
+            @Value("${availability.rebuild.bookings-table:booking.booking}") String bookingsTable) {
+        this.dataSource = dataSource;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize);
+        this.snapshotTx = new TransactionTemplate(txManager);
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTx.setReadOnly(true);
+        this.swapTx = new TransactionTemplate(txManager);
+        this.redis = redis;
+        this.processedEvents = processedEvents;
+        this.nearCache = nearCache;
+        this.engineEnabled = engineEnabled;
+        this.intervalStorage = "interval".equals(storage);
+        this.workerCount = workerCount;
+        this.bookingsTable = bookingsTable;
+    }
+
+    /**
+     * @param fromId first stream entry to replay ({@code stream} only); must be the start of the stream,
+     *               since everything before it would be dropped from the table
+     * @param toId   last stream entry to replay ({@code stream} only; default: current end); later
+     *               entries are applied by the consumer afterwards
+     */
+    Result rebuild(Source source, String fromId, String toId) {
+        if (engineEnabled) {
+            throw new IllegalStateException("Rebuild is not supported while availability.engine is enabled");
+        }
+        if (intervalStorage) {
+            throw new IllegalStateException("Rebuild writes the daily table; not supported with availability.storage=interval");
+        }
+        if (source == Source.STREAM) {
+            requireWholeStream(fromId, streamInfo());
+        }
+        if (!oneAtATime.tryLock()) {
+            throw new IllegalStateException("A rebuild is already running");
+        }
+        long started = System.currentTimeMillis();
+        try (var partitions = new Partitions(workerCount)) {
+            String position;
+            List<StreamedBookingEvent> skip;
+            long stays;
+            if (source == Source.BOOKINGS) {
+                position = streamEnd(); // captured before the snapshot, see skippable()
+                long[] read = { 0 };
+                skip = snapshotTx.execute(status -> {
+                    read[0] = readBookings(partitions);
+                    return skippableAfter(position);
+                });
+                stays = read[0];
+            } else {
+                position = toId != null ? toId : streamEnd();
+                stays = readStream("-", position, partitions);
+                skip = List.of();
+            }
+            partitions.awaitCounts();
+
+            jdbc.execute("DROP TABLE IF EXISTS " + SHADOW);
+            jdbc.execute("CREATE UNLOGGED TABLE " + SHADOW
+                    + " (room_id VARCHAR(128) NOT NULL, available_date DATE NOT NULL, booked_rooms INT NOT NULL)");
+            long roomNights = partitions.copyInto(dataSource);
+
+            swapTx.executeWithoutResult(status -> swap(skip));
+            processedEvents.reset();
+            nearCache.clear();
+            setGroupPosition(position);
+
+            var result = new Result(source, stays, roomNights, position, skip.size(),
+                    System.currentTimeMillis() - started);
+            log.info("Availability rebuilt: {}", result);
+            return result;
+        } finally {
+            oneAtATime.unlock();
+        }
+    }
+
+    private long readBookings(Partitions partitions) {
+        long[] count = { 0 };
+        jdbc.query("SELECT room_id, start_date, end_date FROM " + bookingsTable + " WHERE status = 'CREATED'",
+                (ResultSet rs) -> {
+                    partitions.add(new Stay(rs.getString(1),
+                            rs.getDate(2).toLocalDate().toEpochDay(), rs.getDate(3).toLocalDate().toEpochDay(), 1));
+                    count[0]++;
+                });
+        return count[0];
+    }
+
+    /**
+     * Events after {@code position} that the snapshot (same transaction) already reflects: any event
+     * of a booking present in it, except a cancellation the snapshot does not show yet. Only the first
+     * copy of a re-sent event is returned; later ones fail the booking key when the consumer reads them.
+     */
+    private List<StreamedBookingEvent> skippableAfter(String position) {
+        Map<Long, List<StreamedBookingEvent>> byBooking = new HashMap<>();
+        forEachEntry("(" + position, "+", rec -> {
+            try {
+                BookingEvent e = BookingEventListener.decode(rec.getValue());
+                if (BookingEventListener.isHandled(e) && e.getBookingId() != null) {
+                    byBooking.computeIfAbsent(e.getBookingId(), id -> new ArrayList<>())
+                            .add(new StreamedBookingEvent(rec.getId().getValue(), e));
+                }
+            } catch (Exception malformed) {
+                // never applied by the consumer either
+            }
+        });
+        if (byBooking.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, String> statusInSnapshot = jdbc.execute((ConnectionCallback<Map<Long, String>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(
+                    "SELECT id, status FROM " + bookingsTable + " WHERE id = ANY (?)")) {
+                ps.setArray(1, con.createArrayOf("bigint", byBooking.keySet().toArray()));
+                Map<Long, String> statuses = new HashMap<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        statuses.put(rs.getLong(1), rs.getString(2));
+                    }
+                }
+                return statuses;
+            }
+        });
+        return skippable(byBooking, statusInSnapshot);
+    }
+
+    /**
+     * The events of {@code byBooking} already reflected by a snapshot holding the given booking
+     * statuses (bookings missing from the map are not in it), at most one per booking and event type.
+     */
+    static List<StreamedBookingEvent> skippable(Map<Long, List<StreamedBookingEvent>> byBooking,
+            Map<Long, String> statusInSnapshot) {
+        List<StreamedBookingEvent> skip = new ArrayList<>();
+        byBooking.forEach((bookingId, events) -> {
+            String status = statusInSnapshot.get(bookingId);
+            if (status == null) {
+                return;
+            }
+            Set<String> types = new HashSet<>();
+            for (StreamedBookingEvent e : events) {
+                if ((BookingEventListener.delta(e.event()) > 0 || "CANCELLED".equals(status))
+                        && types.add(e.event().getEventType())) {
+                    skip.add(e);
+                }
+            }
+        });
+        return skip;
+    }
+
+    private long readStream(String fromId, String toId, Partitions partitions) {
+        long[] count = { 0 };
+        Set<String> seen = new HashSet<>();
+        forEachEntry(fromId, toId, rec -> {
+            try {
+                BookingEvent e = BookingEventListener.decode(rec.getValue());
+                if (BookingEventListener.isHandled(e)
+                        && (e.getBookingId() == null || seen.add(e.getBookingId() + ":" + e.getEventType()))) {
+                    partitions.add(new Stay(e.getRoomId(),
+                            e.getStartDate().toEpochDay(), e.getEndDate().toEpochDay(), BookingEventListener.delta(e)));
+                    count[0]++;
+                }
+            } catch (Exception malformed) {
+                log.warn("Skipping malformed stream entry {}: {}", rec.getId(), malformed.toString());
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Rejects a {@code stream} rebuild that could not see every event: one starting after the first
+     * entry, or on a stream that was ever trimmed or had entries deleted ({@code max-deleted-entry-id}
+     * of XINFO STREAM, Redis 7+). A missing stream has nothing to replay and passes.
+     */
+    static void requireWholeStream(String fromId, Map<String, Object> streamInfo) {
+        if (fromId != null && !"-".equals(fromId) && !"0-0".equals(fromId)) {
+            throw new IllegalArgumentException(
+                    "fromId is not supported: a stream rebuild replaces the whole table, so it replays from the start");
+        }
+        if (streamInfo == null) {
+            return;
+        }
+        Object maxDeleted = streamInfo.get("max-deleted-entry-id");
+        if (maxDeleted == null) {
+            throw new IllegalStateException(
+                    "Cannot tell whether the stream was trimmed (needs Redis 7+); rebuild from bookings");
+        }
+        if (!"0-0".equals(maxDeleted.toString())) {
+            throw new IllegalStateException("The stream was trimmed up to " + maxDeleted
+                    + ", so it no longer holds every event; rebuild from bookings");
+        }
+    }
+
+    /** Raw XINFO STREAM fields, or null when the stream does not exist. */
+    private Map<String, Object> streamInfo() {
+        try {
+            return redis.opsForStream().info(RedisStreamConfig.STREAM).getRaw();
+        } catch (Exception noStream) {
+            return null;
+        }
+    }
+
+    /** Pages through XRANGE {@code from..to}; a leading {@code (} makes {@code from} exclusive. */
+    void forEachEntry(String from, String to, Consumer<MapRecord<String, String, String>> action) {
+        String next = from;
+        while (true) {
+            Range<String> range = Range.of(
+                    next.startsWith("(") ? Range.Bound.exclusive(next.substring(1))
+                            : "-".equals(next) ? Range.Bound.unbounded() : Range.Bound.inclusive(next),
+                    "+".equals(to) ? Range.Bound.unbounded() : Range.Bound.inclusive(to));
+            List<MapRecord<String, String, String>> page = redis.<String, String>opsForStream()
+                    .range(RedisStreamConfig.STREAM, range, Limit.limit().count(CHUNK * 10));
+            if (page == null || page.isEmpty()) {
+                return;
+            }
+            page.forEach(action);
+            next = "(" + page.get(page.size() - 1).getId().getValue();
+        }
+    }
+
+    /**
+     * First night the swap replaces: the start of the oldest attached month partition, or the
+     * earliest possible date when there is none.
+     */
+    static LocalDate rebuildFrom(Collection<YearMonth> attachedMonths) {
+        return attachedMonths.stream().min(Comparator.naturalOrder())
+                .map(m -> m.atDay(1))
+                .orElse(LocalDate.of(1, 1, 1));
+    }
+
+    private void swap(List<StreamedBookingEvent> skip) {
+        jdbc.execute("LOCK TABLE availability.availability IN ACCESS EXCLUSIVE MODE");
+        Map<YearMonth, String> attached = PartitionMaintenance.attachedMonths(jdbc);
+        Date from = Date.valueOf(rebuildFrom(attached.keySet()));
+        jdbc.update("CREATE TEMP TABLE availability_totals ON COMMIT DROP AS "
+                + "SELECT room_id, available_date, total_rooms FROM availability.availability WHERE available_date >= ?", from);
+        if (attached.isEmpty()) {
+            jdbc.execute("TRUNCATE availability.availability");
+        } else {
+            jdbc.execute("TRUNCATE " + String.join(", ", attached.values().stream().map(p -> "availability." + p).toList()));
+            jdbc.update("DELETE FROM availability.availability_default WHERE available_date >= ?", from);
+        }
+        jdbc.update("""
+                INSERT INTO availability.availability (room_id, available_date, total_rooms, booked_rooms, version)
+                SELECT COALESCE(s.room_id, t.room_id), COALESCE(s.available_date, t.available_date),
+                       COALESCE(t.total_rooms, ?), COALESCE(s.booked_rooms, 0), 0
+                FROM (SELECT * FROM %s WHERE available_date >= ?) s
+                FULL JOIN availability_totals t ON t.room_id = s.room_id AND t.available_date = s.available_date
+                """.formatted(SHADOW), DEFAULT_TOTAL_ROOMS, from);
+        jdbc.update("DELETE FROM availability.processed_event WHERE consumer_group = ?", RedisStreamConfig.GROUP);
+        jdbc.batchUpdate("""
+                INSERT INTO availability.processed_event (consumer_group, stream_id, booking_id, event_type)
+                VALUES (?, ?, ?, ?)
+                """, skip.stream().map(e -> new Object[] {
+                        RedisStreamConfig.GROUP, e.streamId(), e.event().getBookingId(), e.event().getEventType() }).toList());
+        jdbc.execute("DROP TABLE " + SHADOW);
+    }
+
+    private String streamEnd() {
+        try {
+            return redis.opsForStream().info(RedisStreamConfig.STREAM).lastGeneratedId();
+        } catch (Exception noStream) {
+            return "0-0";
+        }
+    }
+
+    /** XGROUP SETID: the group's next read starts after {@code streamId}. */
+    private void setGroupPosition(String streamId) {
+        redis.execute((RedisCallback<Object>) (RedisConnection c) -> c.execute("XGROUP",
+                bytes("SETID"), bytes(RedisStreamConfig.STREAM), bytes(RedisStreamConfig.GROUP), bytes(streamId)));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Per-room night counts, hash-partitioned by room; each partition is touched only by its own thread. */
+    private static final class Partitions implements AutoCloseable {
+        private final ExecutorService[] workers;
+        private final List<Map<String, Map<Long, Integer>>> counts = new ArrayList<>();
+        private final List<List<Stay>> buffers = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Partitions(int n) {
+            workers = new ExecutorService[n];
+            for (int i = 0; i < n; i++) {
+                String name = "availability-rebuild-" + i;
+                workers[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+                counts.add(new HashMap<>());
+                buffers.add(new ArrayList<>(CHUNK));
+            }
+        }
+
+        void add(Stay stay) {
+            int p = Math.floorMod(stay.roomId().hashCode(), workers.length);
+            List<Stay> buffer = buffers.get(p);
+            buffer.add(stay);
+            if (buffer.size() >= CHUNK) {
+                dispatch(p);
+            }
+        }
+
+        private void dispatch(int p) {
+            List<Stay> chunk = buffers.get(p);
+            buffers.set(p, new ArrayList<>(CHUNK));
+            Map<String, Map<Long, Integer>> partition = counts.get(p);
+            workers[p].execute(() -> {
+                try {
+                    for (Stay s : chunk) {
+                        Map<Long, Integer> nights = partition.computeIfAbsent(s.roomId(), r -> new HashMap<>());
+                        for (long day = s.startDay(); day <= s.endDay(); day++) {
+                            nights.merge(day, s.delta(), Integer::sum);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+        }
+
+        /** Hands over the remaining buffered stays and waits until every partition has counted them. */
+        void awaitCounts() {
+            for (int p = 0; p < workers.length; p++) {
+                dispatch(p);
+            }
+            waitFor(List.of(workers).stream().map(w -> w.submit(() -> { })).toList());
+        }
+
+        /** COPYs every partition into the shadow table in parallel; returns the rows written. */
+        long copyInto(DataSource dataSource) {
+            List<Future<Long>> copies = new ArrayList<>();
+            for (int p = 0; p < workers.length; p++) {
+                Map<String, Map<Long, Integer>> partition = counts.get(p);
+                copies.add(workers[p].submit(() -> copy(dataSource, partition)));
+            }
+            waitFor(copies);
+            return copies.stream().mapToLong(f -> f.resultNow()).sum();
+        }
+
+        private static long copy(DataSource dataSource, Map<String, Map<Long, Integer>> partition) throws SQLException {
+            long rows = 0;
+            try (Connection con = dataSource.getConnection()) {
+                con.setAutoCommit(true);
+                CopyIn copy = con.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                        "COPY " + SHADOW + " (room_id, available_date, booked_rooms) FROM STDIN WITH (FORMAT csv)");
+                try {
+                    StringBuilder csv = new StringBuilder(64 * 1024);
+                    for (var room : partition.entrySet()) {
+                        String quoted = '"' + room.getKey().replace("\"", "\"\"") + '"';
+                        for (var night : room.getValue().entrySet()) {
+                            csv.append(quoted).append(',')
+                                    .append(LocalDate.ofEpochDay(night.getKey())).append(',')
+                                    .append(Math.max(0, night.getValue())).append('\n');
+                            rows++;
+                            if (csv.length() > 60 * 1024) {
+                                write(copy, csv);
+                            }
+                        }
+                    }
+                    write(copy, csv);
+                    copy.endCopy();
+                } finally {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                }
+            }
+            return rows;
+        }
+
+        private static void write(CopyIn copy, StringBuilder csv) throws SQLException {
+            byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(data, 0, data.length);
+            csv.setLength(0);
+        }
+
+        private void waitFor(List<? extends Future<?>> futures) {
+            try {
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Rebuild interrupted", e);
+            } catch (ExecutionException e) {
+                throw new CompletionException("Rebuild worker failed", e.getCause());
+            }
+            if (failure.get() != null) {
+                throw new CompletionException("Rebuild worker failed", failure.get());
+            }
+        }
+
+        @Override
+        public void close() {
+            for (ExecutorService w : workers) {
+                w.shutdownNow();
+            }
+            for (ExecutorService w : workers) {
+                try {
+                    w.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
+// endregion
+
+// region Web
+/** Incident tooling, only mapped with {@code availability.rebuild.enabled=true}. */
+@RestController
+@RequestMapping("/api/availability")
+@ConditionalOnProperty(name = "availability.rebuild.enabled", havingValue = "true")
+class AvailabilityRebuildController {
+
+    private final AvailabilityRebuilder rebuilder;
+
+    AvailabilityRebuildController(AvailabilityRebuilder rebuilder) {
+        this.rebuilder = rebuilder;
+    }
+
+    @PostMapping("/rebuild")
+    ResponseEntity<AvailabilityRebuilder.Result> rebuild(
+            @RequestParam(defaultValue = "bookings") String source,
+            @RequestParam(required = false) String fromId,
+            @RequestParam(required = false) String toId) {
+        AvailabilityRebuilder.Source from;
+        try {
+            from = AvailabilityRebuilder.Source.valueOf(source.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("source must be 'bookings' or 'stream'");
+        }
+        return ResponseEntity.ok(rebuilder.rebuild(from, fromId, toId));
+    }
+
+    /** Engine enabled, interval storage, or another rebuild in progress. */
+    @ExceptionHandler(IllegalStateException.class)
+    ResponseEntity<?> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+}
+// endregion
@@ -2,6 +2,7 @@ package com.example.availabilityservice;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,12 +11,19 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.stream.Consumer;
 import org.springframework.data.redis.connection.stream.MapRecord;
@@ -25,8 +33,11 @@ import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.repository.query.Param;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -42,6 +53,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import java.io.Serializable;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +61,7 @@ import static org.springframework.security.config.Customizer.withDefaults;
 
 // region Application
 @SpringBootApplication
+@EnableScheduling
 public class AvailabilityServiceApplication {
 
     public static void main(String[] args) {
@@ -111,6 +124,15 @@ class ProcessedEvent {
 
     @Column(nullable = false)
     private String streamId;
+
+    // with the group, unique when set (V5): a re-sent event arrives under a new stream ID
+    private Long bookingId;
+
+    private String eventType;
+
+    static ProcessedEvent of(String consumerGroup, String streamId, BookingEvent event) {
+        return new ProcessedEvent(null, consumerGroup, streamId, event.getBookingId(), event.getEventType());
+    }
 }
 
 @Data
@@ -123,6 +145,23 @@ class BookingEvent implements Serializable {
     private LocalDate startDate;
     private LocalDate endDate;
     private String eventType; // e.g., BOOKING_CREATED
+    private Long publishedAt; // epoch millis stamped by booking-service; null for older records
+    private String traceparent; // W3C trace context of the originating request
+
+    BookingEvent(Long bookingId, String roomId, LocalDate startDate, LocalDate endDate, String eventType) {
+        this(bookingId, roomId, startDate, endDate, eventType, null, null);
+    }
+}
+
+/**
+ * Remaining capacity for several rooms over a date range: {@code remaining[r][n]} is room
+ * {@code roomIds[r]} on night {@code startDate + n}. Nights without a row report the default total.
+ */
+record AvailabilityMatrix(LocalDate startDate, LocalDate endDate, List<String> roomIds, int[][] remaining) {
+}
+
+/** A decoded stream record paired with its stream message ID. */
+record StreamedBookingEvent(String streamId, BookingEvent event) {
 }
 // endregion
 
@@ -131,10 +170,90 @@ interface AvailabilityRepository extends JpaRepository<Availability, Long> {
     List<Availability> findByRoomIdAndAvailableDateBetween(String roomId, LocalDate startDate, LocalDate endDate);
 
     Availability findByRoomIdAndAvailableDate(String roomId, LocalDate date);
+
+    /** Remaining capacity only (no entities, ids or versions) for many rooms in one query. */
+    @Query("""
+            select a.roomId as roomId, a.availableDate as availableDate, a.totalRooms - a.bookedRooms as remaining
+            from Availability a
+            where a.roomId in :roomIds and a.availableDate between :startDate and :endDate
+            """)
+    List<RoomNightRemaining> findRemaining(@Param("roomIds") Collection<String> roomIds,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+
+    interface RoomNightRemaining {
+        String getRoomId();
+
+        LocalDate getAvailableDate();
+
+        int getRemaining();
+    }
+
+    /**
+     * Books one room on every night in [startDate, endDate] with a single statement.
+     * Missing days are inserted with {@code totalRooms}; existing days are incremented in place.
+     * Returns each touched night (ISO date) with the rooms it has left.
+     */
+    @Query(value = """
+            INSERT INTO availability.availability AS a (room_id, available_date, total_rooms, booked_rooms, version)
+            SELECT :roomId, CAST(d AS date), :totalRooms, 1, 0
+            FROM generate_series(CAST(:startDate AS date), CAST(:endDate AS date), INTERVAL '1 day') AS d
+            ON CONFLICT (room_id, available_date)
+            DO UPDATE SET booked_rooms = a.booked_rooms + 1, version = a.version + 1
+            RETURNING to_char(a.available_date, 'YYYY-MM-DD') AS night, a.total_rooms - a.booked_rooms AS remaining,
+                      false AS clamped
+            """, nativeQuery = true)
+    List<BookedNight> bookNights(@Param("roomId") String roomId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("totalRooms") int totalRooms);
+
+    /**
+     * Releases one room on every existing night in [startDate, endDate] (never below zero booked).
+     * Returns each touched night with the rooms it has left, and whether it had none booked already.
+     */
+    @Query(value = """
+            WITH cur AS (
+              SELECT id, available_date, booked_rooms FROM availability.availability
+              WHERE room_id = :roomId AND available_date BETWEEN :startDate AND :endDate
+              ORDER BY available_date
+              FOR UPDATE
+            )
+            UPDATE availability.availability AS a
+            SET booked_rooms = GREATEST(0, cur.booked_rooms - 1), version = a.version + 1
+            FROM cur
+            WHERE a.id = cur.id AND a.available_date = cur.available_date
+            RETURNING to_char(a.available_date, 'YYYY-MM-DD') AS night, a.total_rooms - a.booked_rooms AS remaining,
+                      cur.booked_rooms = 0 AS clamped
+            """, nativeQuery = true)
+    List<BookedNight> releaseNights(@Param("roomId") String roomId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
+
+    interface BookedNight {
+        String getNight();
+
+        int getRemaining();
+
+        boolean getClamped(); // release found nothing booked
+    }
 }
 
 interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, Long> {
     boolean existsByConsumerGroupAndStreamId(String consumerGroup, String streamId);
+
+    @Query("select p.streamId from ProcessedEvent p where p.consumerGroup = :group")
+    List<String> findStreamIdsByConsumerGroup(@Param("group") String consumerGroup);
+
+    /** Deletes rows whose stream ID timestamp part is before {@code minMillis}. */
+    @Modifying
+    @Query(value = """
+            DELETE FROM availability.processed_event
+            WHERE consumer_group = :group
+              AND stream_id ~ '^[0-9]+-[0-9]+$'
+              AND CAST(split_part(stream_id, '-', 1) AS bigint) < :minMillis
+            """, nativeQuery = true)
+    int deleteOlderThan(@Param("group") String consumerGroup, @Param("minMillis") long minMillis);
 }
 // endregion
 
@@ -144,51 +263,215 @@ interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, Long> {
 class AvailabilityService {
     private static final Logger log = LoggerFactory.getLogger(AvailabilityService.class);
     private static final String GROUP = "availability"; // Redis consumer group name
-    private static final int DEFAULT_TOTAL_ROOMS = 5; // demo default (move to config if needed)
+    static final int DEFAULT_TOTAL_ROOMS = 5; // demo default (move to config if needed)
+    static final int MAX_MATRIX_ROOMS = 200;
+    static final int MAX_MATRIX_NIGHTS = 366;
 
     private final AvailabilityRepository availabilityRepository;
     private final ProcessedEventRepository processedEventRepository;
-
-    /** Idempotent, optimistic-lock-safe update for a booking-created event. */
+    private final ProcessedEventFilter processedEvents;
+    private final AvailabilityNearCache nearCache;
+    private final AvailabilityCalendarEngine engine;
+    private final InventoryReconciler inventory;
+    private final AvailabilityMetrics metrics;
+    private final NightDeltaWriter nightDeltas;
+    private final ObjectProvider<IntervalAvailabilityStore> intervalStore; // availability.storage=interval
+
+    /**
+     * Idempotent update for a booking-created or booking-cancelled event. All nights are booked (or
+     * released) with one statement, so the cost per event no longer grows with the length of the stay.
+     *
+     * @return the nights that were updated
+     */
     @org.springframework.transaction.annotation.Transactional
-    public void updateAvailabilityForBooking(BookingEvent event, String streamId) {
-        // Idempotency: skip if we've seen this stream message
-        if (processedEventRepository.existsByConsumerGroupAndStreamId(GROUP, streamId)) {
+    public List<LocalDate> updateAvailabilityForBooking(BookingEvent event, String streamId) {
+        // Idempotency: skip if we've seen this stream message (in-memory first, DB only on possible hits).
+        // A copy re-sent under a new stream ID fails the booking key of processed_event instead,
+        // which rolls this transaction back.
+        if (processedEvents.isProcessed(streamId)) {
             log.info("Skip duplicate streamId {}", streamId);
+            return List.of();
+        }
+
+        int delta = BookingEventListener.delta(event);
+        LocalDate start = event.getStartDate();
+        LocalDate end = event.getEndDate();
+        // Nights inside the in-memory window: the journal row commits with the processed-event row
+        // and is written behind to the table. The rest of the stay is written to the table directly.
+        AvailabilityCalendarEngine.Nights inMemory = engine.pin(start, end);
+        List<InventoryReconciler.RoomNight> booked = new java.util.ArrayList<>();
+        if (inMemory == null) {
+            booked.addAll(bookInTable(event, streamId, start, end, delta));
+        } else {
+            if (start.isBefore(inMemory.start())) {
+                booked.addAll(bookInTable(event, streamId, start, inMemory.start().minusDays(1), delta));
+            }
+            if (end.isAfter(inMemory.end())) {
+                booked.addAll(bookInTable(event, streamId, inMemory.end().plusDays(1), end, delta));
+            }
+            engine.journal(event.getRoomId(), inMemory.start(), inMemory.end(), delta);
+        }
+
+        processedEventRepository.save(ProcessedEvent.of(GROUP, streamId, event));
+        AfterCommit.run(() -> {
+            processedEvents.markProcessed(streamId);
+            if (inMemory != null) {
+                var nights = engine.book(event.getRoomId(), inMemory.start(), inMemory.end(), delta, DEFAULT_TOTAL_ROOMS);
+                inventory.reconcile(event.getRoomId(), nights.stream()
+                        .map(d -> new InventoryReconciler.RoomNight(d, engine.remaining(event.getRoomId(), d.toEpochDay())))
+                        .toList());
+            }
+            if (!booked.isEmpty()) {
+                nearCache.invalidateAndBroadcast(event.getRoomId(), start, end);
+                inventory.reconcile(event.getRoomId(), booked);
+            }
+            metrics.propagated(event);
+        });
+        log.info("Processed {} of booking {} (streamId {}) from {} to {}, in memory {}",
+                event.getEventType(), event.getBookingId(), streamId, start, end, inMemory);
+        return start.datesUntil(end.plusDays(1)).toList();
+    }
+
+    /** Books (or releases) [start, end] in the table, counting nights that had nothing to release. */
+    private List<InventoryReconciler.RoomNight> bookInTable(BookingEvent event, String streamId,
+            LocalDate start, LocalDate end, int delta) {
+        IntervalAvailabilityStore intervals = intervalStore.getIfAvailable();
+        if (intervals != null) {
+            return intervals.book(event.getRoomId(), start, end, delta, DEFAULT_TOTAL_ROOMS);
+        }
+        var rows = delta > 0
+                ? availabilityRepository.bookNights(event.getRoomId(), start, end, DEFAULT_TOTAL_ROOMS)
+                : availabilityRepository.releaseNights(event.getRoomId(), start, end);
+        long clamped = rows.stream().filter(AvailabilityRepository.BookedNight::getClamped).count();
+        if (clamped > 0) {
+            metrics.clamped("event", (int) clamped);
+            log.warn("Booking {} (streamId {}) released {} nights of room {} with nothing booked",
+                    event.getBookingId(), streamId, clamped, event.getRoomId());
+        }
+        return rows.stream()
+                .map(b -> new InventoryReconciler.RoomNight(LocalDate.parse(b.getNight()), b.getRemaining()))
+                .sorted(java.util.Comparator.comparing(InventoryReconciler.RoomNight::night))
+                .toList();
+    }
+
+    /**
+     * Applies a polled batch in a single transaction; the caller acknowledges it after commit.
+     * The events are folded into one net delta per room-night first (see {@link NightDeltaWriter}),
+     * so a burst of bookings for one room writes each of its nights once, not once per event.
+     */
+    @org.springframework.transaction.annotation.Transactional
+    public void applyBatch(List<StreamedBookingEvent> batch) {
+        List<StreamedBookingEvent> fresh = new java.util.ArrayList<>(batch.size());
+        java.util.Set<String> seen = new java.util.HashSet<>();
+        boolean inMemory = false;
+        for (StreamedBookingEvent e : batch) {
+            // a re-sent copy in the same batch; copies from earlier batches fail on uq_processed_booking_event
+            boolean resent = e.event().getBookingId() != null
+                    && !seen.add(e.event().getBookingId() + ":" + e.event().getEventType());
+            if (!resent && seen.add(e.streamId()) && !processedEvents.isProcessed(e.streamId())) {
+                fresh.add(e);
+                inMemory |= engine.inWindow(e.event().getStartDate(), e.event().getEndDate()) != null;
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+        if (inMemory) {
+            // calendar updates are in-memory adds: nothing contended to coalesce
+            for (StreamedBookingEvent e : fresh) {
+                updateAvailabilityForBooking(e.event(), e.streamId());
+            }
             return;
         }
 
-        LocalDate current = event.getStartDate();
-        while (!current.isAfter(event.getEndDate())) {
-            boolean saved = false;
-            int attempts = 0;
-            while (!saved && attempts < 3) {
-                attempts++;
-                Availability day = availabilityRepository.findByRoomIdAndAvailableDate(event.getRoomId(), current);
-                if (day == null) {
-                    day = new Availability(null, event.getRoomId(), current, DEFAULT_TOTAL_ROOMS, 0, null);
-                }
-                day.setBookedRooms(day.getBookedRooms() + 1);
+        List<NightDelta> deltas = NightDeltaWriter.coalesce(fresh);
+        IntervalAvailabilityStore intervals = intervalStore.getIfAvailable();
+        Map<String, List<InventoryReconciler.RoomNight>> touched = intervals != null
+                ? intervals.apply(deltas, DEFAULT_TOTAL_ROOMS)
+                : nightDeltas.apply(deltas, DEFAULT_TOTAL_ROOMS);
+        List<String> streamIds = fresh.stream().map(StreamedBookingEvent::streamId).toList();
+        nightDeltas.markProcessed(GROUP, fresh);
+        AfterCommit.run(() -> {
+            streamIds.forEach(processedEvents::markProcessed);
+            touched.forEach((roomId, nights) -> {
+                nearCache.invalidateAndBroadcast(roomId, nights.get(0).night(), nights.get(nights.size() - 1).night());
+                inventory.reconcile(roomId, nights);
+            });
+            fresh.forEach(e -> metrics.propagated(e.event()));
+        });
+        log.info("Applied batch of {} events as {} room-night writes", fresh.size(), deltas.size());
+    }
+
+    /** Room x night matrix of remaining capacity, read with a single {@code room_id IN (...)} query. */
+    public AvailabilityMatrix remainingMatrix(List<String> roomIds, LocalDate startDate, LocalDate endDate) {
+        List<String> rooms = List.copyOf(new java.util.LinkedHashSet<>(roomIds));
+        int nights = (int) java.time.temporal.ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (rooms.isEmpty() || rooms.size() > MAX_MATRIX_ROOMS) {
+            throw new IllegalArgumentException("roomIds must list 1 to " + MAX_MATRIX_ROOMS + " rooms");
+        }
+        if (nights > MAX_MATRIX_NIGHTS) {
+            throw new IllegalArgumentException("date range must not exceed " + MAX_MATRIX_NIGHTS + " nights");
+        }
 
-                try {
-                    availabilityRepository.saveAndFlush(day);
-                    saved = true;
-                } catch (org.springframework.dao.OptimisticLockingFailureException ex) {
-                    log.info("Optimistic lock on {} {} (attempt {}/3)", event.getRoomId(), current, attempts);
+        int[][] remaining = new int[rooms.size()][nights];
+        for (int[] row : remaining) {
+            java.util.Arrays.fill(row, DEFAULT_TOTAL_ROOMS);
+        }
+
+        // nights inside the in-memory window are read from it, the rest from the table
+        AvailabilityCalendarEngine.Nights inMemory = engine.inWindow(startDate, endDate);
+        if (!engine.covers(startDate, endDate)) {
+            Map<String, Integer> rowOf = new java.util.HashMap<>();
+            for (int r = 0; r < rooms.size(); r++) {
+                rowOf.put(rooms.get(r), r);
+            }
+            IntervalAvailabilityStore intervals = intervalStore.getIfAvailable();
+            for (var night : metrics.timeQuery("matrix", () -> intervals != null
+                    ? intervals.findRemaining(rooms, startDate, endDate)
+                    : availabilityRepository.findRemaining(rooms, startDate, endDate))) {
+                int n = (int) java.time.temporal.ChronoUnit.DAYS.between(startDate, night.getAvailableDate());
+                remaining[rowOf.get(night.getRoomId())][n] = night.getRemaining();
+            }
+        }
+        if (inMemory != null) {
+            int first = (int) java.time.temporal.ChronoUnit.DAYS.between(startDate, inMemory.start());
+            int last = (int) java.time.temporal.ChronoUnit.DAYS.between(startDate, inMemory.end());
+            for (int r = 0; r < rooms.size(); r++) {
+                for (int n = first; n <= last; n++) {
+                    int left = engine.remaining(rooms.get(r), startDate.toEpochDay() + n);
+                    remaining[r][n] = left >= 0 ? left : DEFAULT_TOTAL_ROOMS;
                 }
             }
-            if (!saved)
-                throw new IllegalStateException("Failed to persist availability for " + current);
-            current = current.plusDays(1);
         }
-
-        processedEventRepository.save(new ProcessedEvent(null, GROUP, streamId));
-        log.info("Processed booking {} (streamId {}) from {} to {}",
-                event.getBookingId(), streamId, event.getStartDate(), event.getEndDate());
+        return new AvailabilityMatrix(startDate, endDate, rooms, remaining);
     }
 
+    /**
+     * Nights inside the in-memory calendar's window are served from it, the rest from the near cache;
+     * Postgres is only hit when a day outside the window is not cached.
+     */
     public List<Availability> checkAvailability(String roomId, LocalDate startDate, LocalDate endDate) {
-        return availabilityRepository.findByRoomIdAndAvailableDateBetween(roomId, startDate, endDate);
+        AvailabilityCalendarEngine.Nights inMemory = engine.inWindow(startDate, endDate);
+        if (inMemory == null) {
+            return tableRows(roomId, startDate, endDate);
+        }
+        List<Availability> rows = new java.util.ArrayList<>();
+        if (startDate.isBefore(inMemory.start())) {
+            rows.addAll(tableRows(roomId, startDate, inMemory.start().minusDays(1)));
+        }
+        rows.addAll(engine.rows(roomId, inMemory.start(), inMemory.end()));
+        if (endDate.isAfter(inMemory.end())) {
+            rows.addAll(tableRows(roomId, inMemory.end().plusDays(1), endDate));
+        }
+        return rows;
+    }
+
+    private List<Availability> tableRows(String roomId, LocalDate startDate, LocalDate endDate) {
+        IntervalAvailabilityStore intervals = intervalStore.getIfAvailable();
+        return nearCache.getRange(roomId, startDate, endDate,
+                () -> metrics.timeQuery("range", () -> intervals != null
+                        ? intervals.rows(roomId, startDate, endDate)
+                        : availabilityRepository.findByRoomIdAndAvailableDateBetween(roomId, startDate, endDate)));
     }
 }
 // endregion
@@ -212,6 +495,19 @@ class AvailabilityController {
         }
         return ResponseEntity.ok(availabilityService.checkAvailability(roomId, startDate, endDate));
     }
+
+    /** Bulk search: {@code GET /api/availability?roomIds=a,b,c&startDate=&endDate=}. */
+    @GetMapping
+    public ResponseEntity<AvailabilityMatrix> getAvailabilityMatrix(
+            @RequestParam @NotEmpty List<String> roomIds,
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @NotNull @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must be on or after startDate");
+        }
+        return ResponseEntity.ok(availabilityService.remainingMatrix(roomIds, startDate, endDate));
+    }
 }
 // endregion
 
@@ -290,9 +586,9 @@ class SecurityConfig {
 @RequiredArgsConstructor
 class RedisStreamConfig {
 
-    private static final String STREAM = "booking-events";
-    private static final String GROUP = "availability";
-    private static final String CONSUMER = "availability-1";
+    static final String STREAM = "booking-events";
+    static final String GROUP = "availability";
+    static final String CONSUMER = "availability-1";
 
     /** Ensure the consumer group exists. */
     @Bean
@@ -306,27 +602,55 @@ class RedisStreamConfig {
         };
     }
 
-    /** Run the listener container that reads from the Redis Stream. */
+    /**
+     * Run the listener container that reads from the Redis Stream. Records are applied on the
+     * polling thread ({@code single}) or handed to per-room stripes ({@code striped}).
+     */
     @Bean
+    @ConditionalOnExpression("'${availability.stream.consumer-mode:single}' matches 'single|striped'")
     StreamMessageListenerContainer<String, MapRecord<String, String, String>> streamContainer(
             RedisConnectionFactory cf,
-            BookingEventListener listener) {
+            BookingEventListener listener,
+            ObjectProvider<StripedEventDispatcher> stripedDispatcher,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+
+        StreamListener<String, MapRecord<String, String, String>> target = stripedDispatcher.getIfAvailable();
+        if (target == null) {
+            target = listener;
+        }
 
         var options = StreamMessageListenerContainer.StreamMessageListenerContainerOptions
                 .<String, MapRecord<String, String, String>>builder()
                 .pollTimeout(Duration.ofMillis(250))
+                .executor(streamExecutor(virtualThreads))
                 .build();
 
         var container = StreamMessageListenerContainer.create(cf, options);
 
+        // New entries only; ones delivered but never acknowledged are retried by PendingEventReclaimer
         container.receive(
                 Consumer.from(GROUP, CONSUMER),
                 StreamOffset.create(STREAM, ReadOffset.lastConsumed()),
-                listener);
-
-        container.start();
+                target);
         return container;
     }
+
+    /**
+     * Starts reading once the context is fully started, so lifecycle components the listener
+     * depends on (the calendar engine) are loaded first.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void startStreamContainer(ApplicationReadyEvent ready) {
+        ready.getApplicationContext().getBeanProvider(StreamMessageListenerContainer.class)
+                .ifAvailable(StreamMessageListenerContainer::start);
+    }
+
+    /** Polling runs on a virtual thread when {@code spring.threads.virtual.enabled=true}. */
+    private static SimpleAsyncTaskExecutor streamExecutor(boolean virtualThreads) {
+        var executor = new SimpleAsyncTaskExecutor("booking-events-");
+        executor.setVirtualThreads(virtualThreads);
+        return executor;
+    }
 }
 
 @Component
@@ -334,36 +658,66 @@ class RedisStreamConfig {
 class BookingEventListener implements StreamListener<String, MapRecord<String, String, String>> {
     private static final Logger log = LoggerFactory.getLogger(BookingEventListener.class);
     private final AvailabilityService availabilityService;
+    private final StringRedisTemplate redis;
+    private final AvailabilityMetrics metrics;
 
     @Override
     public void onMessage(MapRecord<String, String, String> message) {
         RecordId rid = message.getId();
         String streamId = (rid != null ? rid.getValue() : "unknown");
+        long started = System.nanoTime();
+        BookingEvent event = null;
         try {
-            Map<String, String> map = message.getValue();
-
-            BookingEvent event = new BookingEvent(
-                    parseLong(map.get("bookingId")),
-                    map.getOrDefault("roomId", ""),
-                    LocalDate.parse(map.get("startDate")),
-                    LocalDate.parse(map.get("endDate")),
-                    map.getOrDefault("eventType", ""));
+            event = decode(message.getValue());
 
-            log.info("Received '{}' for booking ID {} (streamId {})",
-                    event.getEventType(), event.getBookingId(), streamId);
+            log.info("Received '{}' for booking ID {} (streamId {}, traceparent {})",
+                    event.getEventType(), event.getBookingId(), streamId, event.getTraceparent());
 
-            if ("BOOKING_CREATED".equals(event.getEventType())) {
+            if (isHandled(event)) {
                 availabilityService.updateAvailabilityForBooking(event, streamId);
+                metrics.eventApplied(started);
             } else {
                 log.debug("Ignoring eventType '{}' (streamId {})", event.getEventType(), streamId);
             }
+            redis.opsForStream().acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, streamId);
 
+        } catch (org.springframework.dao.DataIntegrityViolationException e) {
+            // uq_processed (concurrent duplicate) or uq_processed_booking_event (re-sent copy): already applied
+            log.info("Duplicate of stream message {} rejected by unique index (stream ID or booking event)", streamId);
+            metrics.eventConflict(started, event.getRoomId());
+            redis.opsForStream().acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, streamId);
         } catch (Exception e) {
-            log.warn("Failed to process stream message {}: {}", streamId, e.toString());
+            log.warn("Failed to process stream message {} (left pending for reclaim): {}", streamId, e.toString());
+            metrics.eventFailed(started, event != null ? event.getRoomId() : "unknown");
+        }
+    }
+
+    static boolean isHandled(BookingEvent event) {
+        return "BOOKING_CREATED".equals(event.getEventType()) || "BOOKING_CANCELLED".equals(event.getEventType());
+    }
+
+    /** Rooms the event adds to each night of its stay: +1 for a booking, -1 for a cancellation. */
+    static int delta(BookingEvent event) {
+        return "BOOKING_CANCELLED".equals(event.getEventType()) ? -1 : 1;
+    }
+
+    /** Reads either format: the compact {@code e} field (see {@link CompactBookingEvent}) or the field map. */
+    static BookingEvent decode(Map<String, String> map) {
+        String compact = map.get(CompactBookingEvent.FIELD);
+        if (compact != null) {
+            return CompactBookingEvent.decode(compact);
         }
+        return new BookingEvent(
+                parseLong(map.get("bookingId")),
+                map.getOrDefault("roomId", ""),
+                LocalDate.parse(map.get("startDate")),
+                LocalDate.parse(map.get("endDate")),
+                map.getOrDefault("eventType", ""),
+                parseLong(map.get("publishedAt")),
+                map.get("traceparent"));
     }
 
-    private Long parseLong(String s) {
+    private static Long parseLong(String s) {
         try {
             return Long.parseLong(s);
         } catch (Exception e) {
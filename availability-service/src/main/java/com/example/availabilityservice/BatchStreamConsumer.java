@@ -0,0 +1,164 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch consumer mode ({@code availability.stream.consumer-mode=batch}).
+ * <p>
+ * Reads up to {@code batch-size} records per XREADGROUP (blocking at most {@code batch-max-wait}),
+ * applies them in one transaction and acknowledges the whole batch with a single XACK.
+ * Within the transaction the events are coalesced into one write per room-night
+ * (see {@link AvailabilityService#applyBatch}).
+ * If the batch transaction fails, records are retried one by one so a single bad event
+ * cannot hold back the rest; records that still fail stay pending until {@link PendingEventReclaimer}
+ * retries or dead-letters them.
+ */
+@Component
+@ConditionalOnProperty(name = "availability.stream.consumer-mode", havingValue = "batch")
+class BatchStreamConsumer implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(BatchStreamConsumer.class);
+
+    private final StringRedisTemplate redis;
+    private final AvailabilityService availabilityService;
+    private final AvailabilityMetrics metrics;
+    private final int batchSize;
+    private final Duration maxWait;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    BatchStreamConsumer(StringRedisTemplate redis,
+            AvailabilityService availabilityService,
+            AvailabilityMetrics metrics,
+            @Value("${availability.stream.batch-size:100}") int batchSize,
+            @Value("${availability.stream.batch-max-wait:250ms}") Duration maxWait) {
+        this.redis = redis;
+        this.availabilityService = availabilityService;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::pollLoop, "availability-batch-consumer");
+        worker.start();
+        log.info("Batch stream consumer started (batchSize={}, maxWait={})", batchSize, maxWait);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(maxWait.toMillis() * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        var consumer = Consumer.from(RedisStreamConfig.GROUP, RedisStreamConfig.CONSUMER);
+        var options = StreamReadOptions.empty().count(batchSize).block(maxWait);
+        var offset = StreamOffset.create(RedisStreamConfig.STREAM, ReadOffset.lastConsumed());
+
+        while (running) {
+            try {
+                List<MapRecord<String, String, String>> records =
+                        redis.<String, String>opsForStream().read(consumer, options, offset);
+                if (records != null && !records.isEmpty()) {
+                    processBatch(records);
+                }
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Batch poll failed: {}", e.toString());
+                    sleepQuietly(maxWait);
+                }
+            }
+        }
+    }
+
+    void processBatch(List<MapRecord<String, String, String>> records) {
+        List<StreamedBookingEvent> events = new ArrayList<>(records.size());
+        List<String> ackIds = new ArrayList<>(records.size());
+
+        for (var rec : records) {
+            String streamId = rec.getId().getValue();
+            try {
+                BookingEvent event = BookingEventListener.decode(rec.getValue());
+                if (BookingEventListener.isHandled(event)) {
+                    events.add(new StreamedBookingEvent(streamId, event));
+                } else {
+                    ackIds.add(streamId); // nothing to apply
+                }
+            } catch (Exception e) {
+                // undecodable records can never succeed; acknowledge so they do not stay pending forever
+                log.warn("Dropping malformed stream message {}: {}", streamId, e.toString());
+                ackIds.add(streamId);
+            }
+        }
+
+        if (!events.isEmpty()) {
+            long batchStarted = System.nanoTime();
+            try {
+                availabilityService.applyBatch(events);
+                metrics.batchApplied(batchStarted);
+                events.forEach(e -> ackIds.add(e.streamId()));
+            } catch (Exception batchFailure) {
+                log.warn("Batch of {} events failed ({}); retrying individually", events.size(), batchFailure.toString());
+                metrics.batchFallback(events.size());
+                for (StreamedBookingEvent e : events) {
+                    long started = System.nanoTime();
+                    try {
+                        availabilityService.updateAvailabilityForBooking(e.event(), e.streamId());
+                        metrics.eventApplied(started);
+                        ackIds.add(e.streamId());
+                    } catch (DataIntegrityViolationException duplicate) {
+                        metrics.eventConflict(started, e.event().getRoomId());
+                        ackIds.add(e.streamId()); // already processed (same stream ID or a re-sent copy)
+                    } catch (Exception ex) {
+                        log.warn("Failed to process stream message {}: {}", e.streamId(), ex.toString());
+                        metrics.eventFailed(started, e.event().getRoomId());
+                    }
+                }
+            }
+        }
+
+        if (!ackIds.isEmpty()) {
+            redis.opsForStream().acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP,
+                    ackIds.toArray(String[]::new));
+        }
+        log.debug("Processed batch of {} records ({} acknowledged)", records.size(), ackIds.size());
+    }
+
+    private static void sleepQuietly(Duration d) {
+        try {
+            Thread.sleep(d.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
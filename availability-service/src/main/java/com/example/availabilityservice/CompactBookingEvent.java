@@ -0,0 +1,116 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+// region Codec
+/**
+ * Decoder for the compact booking event written by booking-service: one stream field {@code e}
+ * holding base64 of
+ * <pre>
+ * byte   schema version (1)
+ * byte   event type ordinal in {@link #EVENT_TYPES}
+ * long   bookingId
+ * int    startDate, endDate (epoch days)
+ * long   publishedAt (epoch millis)
+ * short  roomId length, then roomId (UTF-8)
+ * byte   traceparent kind: 0 none, 1 W3C version 00 (long trace-id high, long trace-id low,
+ *        long parent-id, byte flags), 2 other (short length, then UTF-8)
+ * </pre>
+ * No field names and no text dates to parse; the only allocations are the byte array and the event.
+ */
+final class CompactBookingEvent {
+    static final String FIELD = "e";
+    static final byte VERSION = 1;
+    static final List<String> EVENT_TYPES = List.of("BOOKING_CREATED", "BOOKING_CANCELLED");
+
+    private CompactBookingEvent() {
+    }
+
+    /** @throws IllegalArgumentException on an unknown version or a truncated record */
+    static BookingEvent decode(String encoded) {
+        ByteBuffer buf = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+        try {
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported compact event version " + version);
+            }
+            int type = buf.get();
+            long bookingId = buf.getLong();
+            LocalDate start = LocalDate.ofEpochDay(buf.getInt());
+            LocalDate end = LocalDate.ofEpochDay(buf.getInt());
+            long publishedAt = buf.getLong();
+            String roomId = utf8(buf, Short.toUnsignedInt(buf.getShort()));
+            String traceparent = switch (buf.get()) {
+                case 1 -> w3c(buf.getLong(), buf.getLong(), buf.getLong(), buf.get());
+                case 2 -> utf8(buf, Short.toUnsignedInt(buf.getShort()));
+                default -> null;
+            };
+            String eventType = type >= 0 && type < EVENT_TYPES.size() ? EVENT_TYPES.get(type) : "";
+            return new BookingEvent(bookingId, roomId, start, end, eventType, publishedAt, traceparent);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated compact event", e);
+        }
+    }
+
+    private static String utf8(ByteBuffer buf, int length) {
+        String s = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    private static String w3c(long traceHigh, long traceLow, long parent, byte flags) {
+        HexFormat hex = HexFormat.of();
+        return "00-" + hex.toHexDigits(traceHigh) + hex.toHexDigits(traceLow)
+                + "-" + hex.toHexDigits(parent) + "-" + hex.toHexDigits(flags);
+    }
+}
+// endregion
+
+// region Negotiation
+/**
+ * Tells booking-service which event formats our consumer group reads: at startup the group's entry
+ * in {@value #CODECS_KEY} is set to {@code map,compact-v1}, or to {@code map} alone with
+ * {@code availability.stream.compact-encoding=false} (do that before rolling back to a build that
+ * cannot decode compact events). Publishers switch to the compact format only when every group
+ * of the stream has advertised it.
+ */
+@Component
+class EventEncodingAdvertiser {
+    private static final Logger log = LoggerFactory.getLogger(EventEncodingAdvertiser.class);
+    static final String CODECS_KEY = RedisStreamConfig.STREAM + ":codecs";
+
+    private final StringRedisTemplate redis;
+    private final boolean compact;
+
+    EventEncodingAdvertiser(StringRedisTemplate redis,
+            @Value("${availability.stream.compact-encoding:true}") boolean compact) {
+        this.redis = redis;
+        this.compact = compact;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void advertise() {
+        String formats = compact ? "map,compact-v1" : "map";
+        try {
+            redis.opsForHash().put(CODECS_KEY, RedisStreamConfig.GROUP, formats);
+            log.info("Advertised event formats '{}' for group {}", formats, RedisStreamConfig.GROUP);
+        } catch (Exception e) {
+            log.warn("Could not advertise event formats: {}", e.toString());
+        }
+    }
+}
+// endregion
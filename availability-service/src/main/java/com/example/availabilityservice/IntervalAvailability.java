@@ -0,0 +1,279 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// region Calendar
+/** Consecutive nights {@code [start, end]} (epoch days, inclusive) of one room with the same totals. */
+record Run(long start, long end, int total, int booked) {
+}
+
+/**
+ * Interval form of one room's calendar: a sorted, non-overlapping list of {@link Run}s in which
+ * neighbouring runs always differ (adjacent equal runs are merged). Pure functions, no state.
+ */
+final class IntervalCalendar {
+
+    private IntervalCalendar() {
+    }
+
+    /** The merged runs after an update, and the room-nights the zero floor dropped from a release. */
+    record Applied(List<Run> runs, long clamped) {
+    }
+
+    /**
+     * Adds {@code delta} booked rooms (never below zero) to every night in [start, end], splitting the
+     * runs at the range boundaries. Nights without a run get one with {@code defaultTotal} rooms when
+     * {@code delta} is positive and are left absent otherwise, like the daily table. Returns the
+     * merged result; {@code runs} is not modified.
+     */
+    static Applied apply(List<Run> runs, long start, long end, int delta, int defaultTotal) {
+        List<Run> out = new ArrayList<>(runs.size() + 3);
+        long clamped = 0;
+        long next = start; // first night of the range not yet covered
+        for (Run r : runs) {
+            if (r.end() < start || r.start() > end) {
+                out.add(r);
+                continue;
+            }
+            if (r.start() < start) {
+                out.add(new Run(r.start(), start - 1, r.total(), r.booked()));
+            }
+            long from = Math.max(r.start(), start);
+            if (next < from && delta > 0) {
+                out.add(new Run(next, from - 1, defaultTotal, delta));
+            }
+            long to = Math.min(r.end(), end);
+            out.add(new Run(from, to, r.total(), Math.max(0, r.booked() + delta)));
+            clamped += Math.max(0, -(r.booked() + delta)) * (to - from + 1);
+            if (r.end() > end) {
+                out.add(new Run(end + 1, r.end(), r.total(), r.booked()));
+            }
+            next = to + 1;
+        }
+        if (next <= end && delta > 0) {
+            out.add(new Run(next, end, defaultTotal, delta));
+        }
+        out.sort(Comparator.comparingLong(Run::start));
+        return new Applied(merge(out), clamped);
+    }
+
+    /** Joins neighbouring runs that touch and have the same total and booked counts. */
+    static List<Run> merge(List<Run> sorted) {
+        List<Run> merged = new ArrayList<>(sorted.size());
+        for (Run r : sorted) {
+            int last = merged.size() - 1;
+            Run prev = last >= 0 ? merged.get(last) : null;
+            if (prev != null && prev.end() + 1 == r.start() && prev.total() == r.total() && prev.booked() == r.booked()) {
+                merged.set(last, new Run(prev.start(), r.end(), r.total(), r.booked()));
+            } else {
+                merged.add(r);
+            }
+        }
+        return merged;
+    }
+
+    /** The run covering {@code day}, or {@code null}. */
+    static Run at(List<Run> runs, long day) {
+        int lo = 0;
+        int hi = runs.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Run r = runs.get(mid);
+            if (r.end() < day) {
+                lo = mid + 1;
+            } else if (r.start() > day) {
+                hi = mid - 1;
+            } else {
+                return r;
+            }
+        }
+        return null;
+    }
+}
+// endregion
+
+// region Store
+/**
+ * {@code availability.storage=interval}: keeps {@code availability.availability_interval} rows, one
+ * per run of identical occupancy, instead of one row per room-night. A 30-night stay on an empty
+ * calendar is one row, not 30, and a fully booked month stays one row. Reads expand the runs
+ * overlapping the requested range back into per-night {@link Availability} values.
+ * <p>
+ * Writes to one room are serialized with a transaction-scoped advisory lock on the room, so a run
+ * can be split and re-merged without racing another writer. Not combinable with the in-memory
+ * engine, which writes behind to the daily table.
+ */
+@Component
+@ConditionalOnProperty(name = "availability.storage", havingValue = "interval")
+class IntervalAvailabilityStore {
+    private static final Logger log = LoggerFactory.getLogger(IntervalAvailabilityStore.class);
+
+    /** Remaining rooms of one room-night, shaped like the daily repository's projection. */
+    private record Remaining(String getRoomId, LocalDate getAvailableDate, int getRemaining)
+            implements AvailabilityRepository.RoomNightRemaining {
+    }
+
+    private final JdbcTemplate jdbc;
+    private final AvailabilityMetrics metrics;
+
+    IntervalAvailabilityStore(DataSource dataSource,
+            AvailabilityMetrics metrics,
+            @Value("${availability.engine.enabled:false}") boolean engineEnabled) {
+        if (engineEnabled) {
+            throw new IllegalStateException("availability.storage=interval cannot be combined with availability.engine.enabled");
+        }
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.metrics = metrics;
+    }
+
+    /** Adds {@code delta} rooms to [start, end] of one room; returns what each existing night has left. */
+    List<InventoryReconciler.RoomNight> book(String roomId, LocalDate start, LocalDate end, int delta, int defaultTotal) {
+        List<NightDelta> nights = start.datesUntil(end.plusDays(1)).map(d -> new NightDelta(roomId, d, delta)).toList();
+        return apply(nights, defaultTotal).getOrDefault(roomId, List.of());
+    }
+
+    /**
+     * Applies coalesced per-night deltas (see {@link NightDeltaWriter#coalesce}): consecutive nights
+     * of a room with the same delta become one range update, and each room's runs are loaded and
+     * rewritten once. Must run inside the caller's transaction.
+     */
+    Map<String, List<InventoryReconciler.RoomNight>> apply(List<NightDelta> deltas, int defaultTotal) {
+        Map<String, List<NightDelta>> byRoom = new TreeMap<>(); // lock rooms in a stable order
+        for (NightDelta d : deltas) {
+            byRoom.computeIfAbsent(d.roomId(), r -> new ArrayList<>()).add(d);
+        }
+        Map<String, List<InventoryReconciler.RoomNight>> touched = new TreeMap<>();
+        long[] clamped = { 0 };
+        byRoom.forEach((roomId, nights) -> {
+            nights.sort(Comparator.comparing(NightDelta::night));
+            long first = nights.get(0).night().toEpochDay();
+            long last = nights.get(nights.size() - 1).night().toEpochDay();
+
+            lock(roomId);
+            List<Run> before = load(roomId, first - 1, last + 1); // neighbours too, so they can merge
+            List<Run> after = before;
+            int i = 0;
+            while (i < nights.size()) {
+                int j = i;
+                long day = nights.get(i).night().toEpochDay();
+                int delta = nights.get(i).delta();
+                while (j + 1 < nights.size() && nights.get(j + 1).delta() == delta
+                        && nights.get(j + 1).night().toEpochDay() == day + (j + 1 - i)) {
+                    j++;
+                }
+                IntervalCalendar.Applied applied = IntervalCalendar.apply(after, day, day + (j - i), delta, defaultTotal);
+                after = applied.runs();
+                clamped[0] += applied.clamped();
+                i = j + 1;
+            }
+            store(roomId, before, after);
+
+            List<InventoryReconciler.RoomNight> left = new ArrayList<>(nights.size());
+            for (NightDelta d : nights) {
+                Run r = IntervalCalendar.at(after, d.night().toEpochDay());
+                if (r != null) {
+                    left.add(new InventoryReconciler.RoomNight(d.night(), r.total() - r.booked()));
+                }
+            }
+            if (!left.isEmpty()) {
+                touched.put(roomId, left);
+            }
+        });
+        if (clamped[0] > 0) {
+            metrics.clamped("interval", (int) clamped[0]);
+            log.warn("Interval update released below zero booked in {} rooms: {} room-nights had nothing to release",
+                    byRoom.size(), clamped[0]);
+        }
+        return touched;
+    }
+
+    /** Nights of [start, end] that have a run, one {@link Availability} per night (no id or version). */
+    List<Availability> rows(String roomId, LocalDate start, LocalDate end) {
+        List<Availability> rows = new ArrayList<>();
+        long from = start.toEpochDay();
+        long to = end.toEpochDay();
+        for (Run r : load(roomId, from, to)) {
+            for (long day = Math.max(r.start(), from); day <= Math.min(r.end(), to); day++) {
+                rows.add(new Availability(null, roomId, LocalDate.ofEpochDay(day), r.total(), r.booked(), null));
+            }
+        }
+        return rows;
+    }
+
+    /** Remaining capacity of every existing night of the rooms in [start, end], in one query. */
+    List<AvailabilityRepository.RoomNightRemaining> findRemaining(Collection<String> roomIds, LocalDate start, LocalDate end) {
+        long from = start.toEpochDay();
+        long to = end.toEpochDay();
+        List<AvailabilityRepository.RoomNightRemaining> nights = new ArrayList<>();
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    SELECT room_id, start_date, end_date, total_rooms - booked_rooms
+                    FROM availability.availability_interval
+                    WHERE room_id = ANY (?) AND start_date <= ? AND end_date >= ?
+                    """);
+            ps.setArray(1, con.createArrayOf("varchar", roomIds.toArray()));
+            ps.setDate(2, Date.valueOf(end));
+            ps.setDate(3, Date.valueOf(start));
+            return ps;
+        }, rs -> {
+            String roomId = rs.getString(1);
+            long runEnd = Math.min(rs.getDate(3).toLocalDate().toEpochDay(), to);
+            for (long day = Math.max(rs.getDate(2).toLocalDate().toEpochDay(), from); day <= runEnd; day++) {
+                nights.add(new Remaining(roomId, LocalDate.ofEpochDay(day), rs.getInt(4)));
+            }
+        });
+        return nights;
+    }
+
+    private void lock(String roomId) {
+        jdbc.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> { }, roomId);
+    }
+
+    private List<Run> load(String roomId, long from, long to) {
+        return jdbc.query("""
+                SELECT start_date, end_date, total_rooms, booked_rooms
+                FROM availability.availability_interval
+                WHERE room_id = ? AND start_date <= ? AND end_date >= ?
+                ORDER BY start_date
+                """, (rs, n) -> new Run(rs.getDate(1).toLocalDate().toEpochDay(), rs.getDate(2).toLocalDate().toEpochDay(),
+                rs.getInt(3), rs.getInt(4)),
+                roomId, Date.valueOf(LocalDate.ofEpochDay(to)), Date.valueOf(LocalDate.ofEpochDay(from)));
+    }
+
+    /** Deletes the runs that changed and inserts their replacements; unchanged runs are not touched. */
+    private void store(String roomId, List<Run> before, List<Run> after) {
+        Map<Long, Run> kept = new HashMap<>();
+        after.forEach(r -> kept.put(r.start(), r));
+        List<Run> removed = before.stream().filter(r -> !r.equals(kept.get(r.start()))).toList();
+        List<Run> unchanged = before.stream().filter(r -> r.equals(kept.get(r.start()))).toList();
+        List<Run> added = after.stream().filter(r -> !unchanged.contains(r)).toList();
+        if (!removed.isEmpty()) {
+            jdbc.batchUpdate("DELETE FROM availability.availability_interval WHERE room_id = ? AND start_date = ?",
+                    removed.stream().map(r -> new Object[] { roomId, Date.valueOf(LocalDate.ofEpochDay(r.start())) }).toList());
+        }
+        if (!added.isEmpty()) {
+            jdbc.batchUpdate("""
+                    INSERT INTO availability.availability_interval (room_id, start_date, end_date, total_rooms, booked_rooms)
+                    VALUES (?, ?, ?, ?, ?)
+                    """, added.stream().map(r -> new Object[] { roomId, Date.valueOf(LocalDate.ofEpochDay(r.start())),
+                    Date.valueOf(LocalDate.ofEpochDay(r.end())), r.total(), r.booked() }).toList());
+        }
+    }
+}
+// endregion
@@ -0,0 +1,100 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds booking-service's reservation counters ({@code inventory:{roomId}:<date>}) from applied
+ * booking events.
+ * <ul>
+ * <li>A missing counter (Redis restart, bookings taken before reservations were enabled) is set to
+ * the projection's remaining rooms.
+ * <li>A counter booking-service created from its {@code default-capacity} guess (marked
+ * {@code <key>:assumed}) is lowered to the projection's remaining rooms if those are fewer, then the
+ * mark is dropped. This corrects a guess made without the bookings already stored, or for a room
+ * with fewer rooms than the default.
+ * <li>Any other counter is left alone: it already accounts for reservations whose events have not
+ * reached us yet, which the projection cannot see.
+ * </ul>
+ * The one correction of a guessed counter is exact unless that night had both bookings before the
+ * guess and reservations still in flight when it runs. Seed the counters (enable this before
+ * {@code booking.reservation.enabled}) to avoid guesses altogether.
+ */
+@Component
+class InventoryReconciler {
+    private static final Logger log = LoggerFactory.getLogger(InventoryReconciler.class);
+
+    /** KEYS are the night counters followed by their {@code :assumed} marks; ARGV the remaining rooms, then expiries. */
+    private static final RedisScript<Long> RECONCILE = new DefaultRedisScript<>("""
+            local nights = #KEYS / 2
+            for i = 1, nights do
+              local remaining = tonumber(ARGV[i])
+              if redis.call('EXISTS', KEYS[i]) == 0 then
+                redis.call('SET', KEYS[i], remaining, 'EXAT', ARGV[nights + i])
+              elseif redis.call('DEL', KEYS[nights + i]) == 1 then
+                if remaining < tonumber(redis.call('GET', KEYS[i])) then
+                  redis.call('SET', KEYS[i], remaining, 'KEEPTTL')
+                end
+              end
+            end
+            return 0
+            """, Long.class);
+
+    record RoomNight(LocalDate night, int remaining) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+
+    InventoryReconciler(StringRedisTemplate redis,
+            @Value("${availability.inventory.reconcile-enabled:false}") boolean enabled) {
+        this.redis = redis;
+        this.enabled = enabled;
+    }
+
+    /** One script call for the touched nights that have not expired yet (a room's counters share a slot). */
+    void reconcile(String roomId, List<RoomNight> nights) {
+        if (!enabled || nights.isEmpty()) {
+            return;
+        }
+        long now = Instant.now().getEpochSecond();
+        List<String> counters = new ArrayList<>();
+        List<String> remaining = new ArrayList<>();
+        List<String> expiries = new ArrayList<>();
+        for (RoomNight n : nights) {
+            long expiresAt = n.night().plusDays(2).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            if (expiresAt > now) {
+                counters.add(key(roomId, n.night()));
+                remaining.add(Integer.toString(Math.max(0, n.remaining())));
+                expiries.add(Long.toString(expiresAt));
+            }
+        }
+        if (counters.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(counters);
+        counters.forEach(k -> keys.add(k + ":assumed"));
+        remaining.addAll(expiries);
+        try {
+            redis.execute(RECONCILE, keys, remaining.toArray());
+        } catch (Exception e) {
+            log.warn("Failed to reconcile inventory counters for {}: {}", roomId, e.toString());
+        }
+    }
+
+    /** Same key layout as booking-service's CapacityReservations. */
+    static String key(String roomId, LocalDate night) {
+        return "inventory:{" + roomId + "}:" + night;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Net change of booked rooms on one room-night across a batch of events. */
+record NightDelta(String roomId, LocalDate night, int delta) {
+}
+
+/** {@code delta} booked rooms on every night of [start, end] of one room. */
+record Stay(String roomId, LocalDate start, LocalDate end, int delta) {
+}
+
+/**
+ * Write side of coalesced batches: folds a batch of booking events into one {@link NightDelta} per
+ * room-night and applies them with set-based statements over {@code unnest(...)} arrays, so every
+ * touched row is written once per batch however many events hit it. Runs in the caller's transaction.
+ */
+@Component
+class NightDeltaWriter {
+    private static final Logger log = LoggerFactory.getLogger(NightDeltaWriter.class);
+
+    /** Adds the raw delta to the current (locked) value; the last column is what the floor at zero dropped. */
+    private static final String UPDATE = """
+            WITH t AS (
+              SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS date[]), CAST(? AS int[])) AS t(room_id, available_date, delta)
+            ), cur AS (
+              SELECT a.id, a.available_date, a.booked_rooms, t.delta
+              FROM availability.availability a
+              JOIN t ON a.room_id = t.room_id AND a.available_date = t.available_date
+              ORDER BY a.room_id, a.available_date
+              FOR UPDATE OF a
+            )
+            UPDATE availability.availability AS a
+            SET booked_rooms = GREATEST(0, cur.booked_rooms + cur.delta), version = a.version + 1
+            FROM cur
+            WHERE a.id = cur.id AND a.available_date = cur.available_date
+            RETURNING a.room_id, a.available_date, a.total_rooms - a.booked_rooms, GREATEST(0, -(cur.booked_rooms + cur.delta))
+            """;
+
+    /** Inserts nights without a row; rows another writer created in between are skipped and updated after. */
+    private static final String INSERT = """
+            WITH t AS (
+              SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS date[]), CAST(? AS int[])) AS t(room_id, available_date, delta)
+            ), ins AS (
+              INSERT INTO availability.availability (room_id, available_date, total_rooms, booked_rooms, version)
+              SELECT t.room_id, t.available_date, ?, GREATEST(0, t.delta), 0 FROM t
+              ON CONFLICT (room_id, available_date) DO NOTHING
+              RETURNING room_id, available_date, total_rooms - booked_rooms AS remaining
+            )
+            SELECT ins.room_id, ins.available_date, ins.remaining, GREATEST(0, -t.delta)
+            FROM ins JOIN t ON t.room_id = ins.room_id AND t.available_date = ins.available_date
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final AvailabilityMetrics metrics;
+
+    NightDeltaWriter(DataSource dataSource, AvailabilityMetrics metrics) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sums {@link BookingEventListener#delta} over every night of every stay. Nights that net to zero
+     * (booked and cancelled in the same batch) are dropped. Sorted by room and night, so concurrent
+     * writers lock rows in the same order.
+     */
+    static List<NightDelta> coalesce(List<StreamedBookingEvent> events) {
+        return coalesceStays(events.stream()
+                .map(e -> new Stay(e.event().getRoomId(), e.event().getStartDate(), e.event().getEndDate(),
+                        BookingEventListener.delta(e.event())))
+                .toList());
+    }
+
+    /** {@link #coalesce} for stays that already carry their delta (the engine's journal). */
+    static List<NightDelta> coalesceStays(List<Stay> stays) {
+        Map<String, Map<Long, Integer>> byRoom = new TreeMap<>();
+        for (Stay stay : stays) {
+            Map<Long, Integer> nights = byRoom.computeIfAbsent(stay.roomId(), r -> new TreeMap<>());
+            for (long day = stay.start().toEpochDay(); day <= stay.end().toEpochDay(); day++) {
+                nights.merge(day, stay.delta(), Integer::sum);
+            }
+        }
+        List<NightDelta> deltas = new ArrayList<>();
+        byRoom.forEach((room, nights) -> nights.forEach((day, delta) -> {
+            if (delta != 0) {
+                deltas.add(new NightDelta(room, LocalDate.ofEpochDay(day), delta));
+            }
+        }));
+        return deltas;
+    }
+
+    /**
+     * Adds each delta to its row (never below zero booked; what the floor drops is counted in
+     * {@code availability.booked.clamped}). Existing rows take one UPDATE; nights without a row are
+     * inserted with {@code defaultTotal} rooms. Returns what each touched night has left, per room in
+     * night order.
+     */
+    Map<String, List<InventoryReconciler.RoomNight>> apply(List<NightDelta> deltas, int defaultTotal) {
+        Map<String, List<InventoryReconciler.RoomNight>> touched = new TreeMap<>();
+        if (deltas.isEmpty()) {
+            return touched;
+        }
+        Map<String, NightDelta> missing = new LinkedHashMap<>(); // not yet written, by room|night
+        deltas.forEach(d -> missing.put(key(d.roomId(), d.night()), d));
+
+        int clamped = unnest(UPDATE, deltas, null, touched, missing);
+        if (!missing.isEmpty()) {
+            clamped += unnest(INSERT, List.copyOf(missing.values()), defaultTotal, touched, missing);
+        }
+        if (!missing.isEmpty()) {
+            // inserted by another writer after our UPDATE: the row exists now, so add the raw delta to it
+            clamped += unnest(UPDATE, List.copyOf(missing.values()), null, touched, missing);
+        }
+        if (clamped > 0) {
+            metrics.clamped("batch", clamped);
+            log.warn("Batch released below zero booked in {} rooms: {} room-nights had nothing to release", touched.size(), clamped);
+        }
+        touched.values().forEach(nights -> nights.sort(Comparator.comparing(InventoryReconciler.RoomNight::night)));
+        return touched;
+    }
+
+    /** Records the batch's events as processed, by stream ID and booking key (one JDBC batch). */
+    void markProcessed(String consumerGroup, List<StreamedBookingEvent> events) {
+        jdbc.batchUpdate("""
+                INSERT INTO availability.processed_event (consumer_group, stream_id, booking_id, event_type)
+                VALUES (?, ?, ?, ?)
+                """, events.stream().map(e -> new Object[] {
+                        consumerGroup, e.streamId(), e.event().getBookingId(), e.event().getEventType() }).toList());
+    }
+
+    private static String key(String roomId, LocalDate night) {
+        return roomId + '|' + night;
+    }
+
+    /** Runs {@code sql} over the rows as arrays; returns the rooms clamped away (its last column). */
+    private int unnest(String sql, List<NightDelta> rows, Integer defaultTotal,
+            Map<String, List<InventoryReconciler.RoomNight>> touched,
+            Map<String, NightDelta> missing) {
+        int[] clamped = { 0 };
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("varchar", rows.stream().map(NightDelta::roomId).toArray()));
+            ps.setArray(2, con.createArrayOf("date", rows.stream().map(d -> Date.valueOf(d.night())).toArray()));
+            ps.setArray(3, con.createArrayOf("int4", rows.stream().map(NightDelta::delta).toArray()));
+            if (defaultTotal != null) {
+                ps.setInt(4, defaultTotal);
+            }
+            return ps;
+        }, rs -> {
+            String room = rs.getString(1);
+            LocalDate night = rs.getDate(2).toLocalDate();
+            missing.remove(key(room, night));
+            touched.computeIfAbsent(room, r -> new ArrayList<>())
+                    .add(new InventoryReconciler.RoomNight(night, rs.getInt(3)));
+            clamped[0] += rs.getInt(4);
+        });
+        return clamped[0];
+    }
+}
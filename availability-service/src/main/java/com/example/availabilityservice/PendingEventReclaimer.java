@@ -0,0 +1,178 @@
+package com.example.availabilityservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Second chance for records that were delivered but never acknowledged: ones whose apply failed,
+ * and ones left behind by a crash between commit and XACK. Consumers only read new entries
+ * ({@code >}), so without this such records would sit in the group's pending list forever (and
+ * hold back stream retention in booking-service).
+ * <p>
+ * At startup and every {@code interval}, the oldest {@code batch-size} pending entries of the group
+ * are listed with XPENDING. Those idle for at least {@code min-idle} are claimed for this consumer
+ * with XCLAIM (which re-checks the idle time, so an entry another consumer is still working on is
+ * left alone) and fed through the active consumer mode again; duplicates are absorbed by the
+ * processed-event check. An entry already delivered {@code max-deliveries} times is copied to
+ * {@value #DEAD_LETTER_STREAM} (with its original ID in {@code sourceId}) and acknowledged instead.
+ * <p>
+ * In striped mode, records queued behind a held room's head are skipped: they are not attempted
+ * before the head is resolved, so claiming them would only run up their delivery count until they
+ * were dead-lettered together with it.
+ * <p>
+ * {@code min-idle} must exceed the longest time a record can legitimately wait for its apply
+ * (e.g. a full striped queue). Meters: {@code availability.stream.reclaimed},
+ * {@code availability.stream.dead-lettered}.
+ */
+@Component
+@ConditionalOnExpression("'${availability.stream.consumer-mode:single}' matches 'single|striped|batch'")
+class PendingEventReclaimer {
+    private static final Logger log = LoggerFactory.getLogger(PendingEventReclaimer.class);
+    static final String DEAD_LETTER_STREAM = RedisStreamConfig.STREAM + ":dead-letter";
+
+    /** Pending entries to retry and to give up on. */
+    record Plan(List<String> retry, List<String> deadLetter) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final ObjectProvider<BatchStreamConsumer> batchConsumer;
+    private final ObjectProvider<StripedEventDispatcher> stripedDispatcher;
+    private final BookingEventListener listener;
+    private final Duration minIdle;
+    private final long maxDeliveries;
+    private final int batchSize;
+    private final Counter reclaimed;
+    private final Counter deadLettered;
+
+    PendingEventReclaimer(StringRedisTemplate redis,
+            ObjectProvider<BatchStreamConsumer> batchConsumer,
+            ObjectProvider<StripedEventDispatcher> stripedDispatcher,
+            BookingEventListener listener,
+            MeterRegistry registry,
+            @Value("${availability.stream.reclaim.min-idle:PT1M}") Duration minIdle,
+            @Value("${availability.stream.reclaim.max-deliveries:5}") long maxDeliveries,
+            @Value("${availability.stream.reclaim.batch-size:100}") int batchSize) {
+        this.redis = redis;
+        this.batchConsumer = batchConsumer;
+        this.stripedDispatcher = stripedDispatcher;
+        this.listener = listener;
+        this.minIdle = minIdle;
+        this.maxDeliveries = maxDeliveries;
+        this.batchSize = batchSize;
+        this.reclaimed = Counter.builder("availability.stream.reclaimed")
+                .description("Pending stream records claimed and applied again")
+                .register(registry);
+        this.deadLettered = Counter.builder("availability.stream.dead-lettered")
+                .description("Stream records moved to the dead-letter stream after max-deliveries")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${availability.stream.reclaim.interval:PT30S}")
+    public void reclaim() {
+        try {
+            PendingMessages pending = redis.opsForStream()
+                    .pending(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, Range.unbounded(), batchSize);
+            if (pending == null || pending.isEmpty()) {
+                return;
+            }
+            StripedEventDispatcher striped = stripedDispatcher.getIfAvailable();
+            Plan plan = plan(pending.toList(), minIdle, maxDeliveries,
+                    striped == null ? id -> false : striped::isWaiting);
+            List<String> idle = new ArrayList<>(plan.retry());
+            idle.addAll(plan.deadLetter());
+            if (idle.isEmpty()) {
+                return;
+            }
+            List<MapRecord<String, String, String>> claimed = redis.<String, String>opsForStream().claim(
+                    RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, RedisStreamConfig.CONSUMER,
+                    XClaimOptions.minIdle(minIdle).ids(idle.toArray(String[]::new)));
+            if (claimed == null || claimed.isEmpty()) {
+                return;
+            }
+
+            Set<String> giveUp = Set.copyOf(plan.deadLetter());
+            List<MapRecord<String, String, String>> retry = new ArrayList<>(claimed.size());
+            for (var rec : claimed) {
+                if (giveUp.contains(rec.getId().getValue())) {
+                    deadLetter(rec);
+                } else {
+                    retry.add(rec);
+                }
+            }
+            if (!retry.isEmpty()) {
+                log.info("Reclaimed {} pending records (oldest {})", retry.size(), retry.get(0).getId());
+                reclaimed.increment(retry.size());
+                apply(retry);
+            }
+        } catch (Exception e) {
+            log.warn("Pending reclaim failed: {}", e.toString());
+        }
+    }
+
+    /**
+     * Splits the listed pending entries: idle ones delivered fewer than {@code maxDeliveries} times
+     * are retried, idle ones at or above it are dead-lettered, the rest (and those {@code waiting}
+     * behind a held room) are left alone.
+     */
+    static Plan plan(List<PendingMessage> pending, Duration minIdle, long maxDeliveries, Predicate<String> waiting) {
+        List<String> retry = new ArrayList<>();
+        List<String> deadLetter = new ArrayList<>();
+        for (PendingMessage p : pending) {
+            if (p.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0 || waiting.test(p.getIdAsString())) {
+                continue;
+            }
+            (p.getTotalDeliveryCount() >= maxDeliveries ? deadLetter : retry).add(p.getIdAsString());
+        }
+        return new Plan(retry, deadLetter);
+    }
+
+    /** Through the same code path as a first delivery, so ordering and acknowledgement rules stay the same. */
+    private void apply(List<MapRecord<String, String, String>> records) {
+        BatchStreamConsumer batch = batchConsumer.getIfAvailable();
+        if (batch != null) {
+            batch.processBatch(records);
+            return;
+        }
+        StripedEventDispatcher striped = stripedDispatcher.getIfAvailable();
+        for (var rec : records) {
+            if (striped != null) {
+                striped.onMessage(rec);
+            } else {
+                listener.onMessage(rec);
+            }
+        }
+    }
+
+    private void deadLetter(MapRecord<String, String, String> rec) {
+        String streamId = rec.getId().getValue();
+        Map<String, String> fields = new HashMap<>(rec.getValue());
+        fields.put("sourceId", streamId);
+        redis.opsForStream().add(StreamRecords.mapBacked(fields).withStreamKey(DEAD_LETTER_STREAM));
+        redis.opsForStream().acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, streamId);
+        deadLettered.increment();
+        stripedDispatcher.ifAvailable(striped -> striped.deadLettered(rec));
+        log.error("Moved stream message {} to {} after {} deliveries", streamId, DEAD_LETTER_STREAM, maxDeliveries);
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// region Filter
+/**
+ * Answers "has this stream message already been processed?" without a DB round trip in the
+ * common case.
+ * <ul>
+ * <li>a bounded set of recently processed IDs (ordered by stream ID) gives definite hits;</li>
+ * <li>a Bloom filter over all retained IDs gives definite misses;</li>
+ * <li>only possible hits fall back to {@code processed_event}.</li>
+ * </ul>
+ * IDs are added after commit only. Any race the filter misses is closed by the
+ * {@code uq_processed (consumer_group, stream_id)} unique constraint.
+ * <p>
+ * Compaction deleting rows does not make the filter wrong, only fuller than it needs to be, so it
+ * is rebuilt ({@link #compacted}) only once it holds more IDs than it was sized for. A rebuild fills
+ * a new filter off to the side and swaps it in; IDs marked meanwhile are buffered and added to it.
+ */
+@Component
+class ProcessedEventFilter {
+    private static final Logger log = LoggerFactory.getLogger(ProcessedEventFilter.class);
+
+    private final ProcessedEventRepository repository;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final int recentCapacity;
+
+    private final ConcurrentSkipListMap<StreamId, Boolean> recent = new ConcurrentSkipListMap<>();
+    private final AtomicInteger recentSize = new AtomicInteger();
+    private volatile BloomFilter bloom;
+    private volatile long bloomCapacity; // IDs the current filter was sized for
+    private final AtomicLong bloomSize = new AtomicLong(); // IDs put into it (stale ones included)
+    private volatile Queue<String> markedDuringReload;
+    private volatile boolean ready; // until warmed from the DB, every lookup goes to the DB
+
+    ProcessedEventFilter(ProcessedEventRepository repository,
+            @Value("${availability.dedup.expected-ids:1000000}") int expectedInsertions,
+            @Value("${availability.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${availability.dedup.recent-ids:10000}") int recentCapacity) {
+        this.repository = repository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.recentCapacity = recentCapacity;
+        this.bloom = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.bloomCapacity = expectedInsertions;
+    }
+
+    /** True if {@code streamId} was processed by this consumer group. */
+    boolean isProcessed(String streamId) {
+        StreamId id = StreamId.parse(streamId);
+        if (id != null && recent.containsKey(id)) {
+            return true;
+        }
+        if (ready && !bloom.mightContain(streamId)) {
+            return false;
+        }
+        return repository.existsByConsumerGroupAndStreamId(RedisStreamConfig.GROUP, streamId);
+    }
+
+    /** Records {@code streamId} as processed; call only once the owning transaction has committed. */
+    void markProcessed(String streamId) {
+        Queue<String> reloading = markedDuringReload; // read before bloom: see reload()
+        if (reloading != null) {
+            reloading.add(streamId);
+        }
+        bloom.put(streamId);
+        bloomSize.incrementAndGet();
+        StreamId id = StreamId.parse(streamId);
+        if (id != null && recent.putIfAbsent(id, Boolean.TRUE) == null
+                && recentSize.incrementAndGet() > recentCapacity) {
+            if (recent.pollFirstEntry() != null) {
+                recentSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the Bloom filter from {@code processed_event}, e.g. at startup, into a new filter that
+     * replaces the current one when complete. An ID marked during the load is either committed
+     * before the query (so loaded) or added to the buffer, which is drained after the swap; one
+     * that saw the buffer already gone saw the new filter too.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    synchronized void reload() {
+        Queue<String> marked = new ConcurrentLinkedQueue<>();
+        markedDuringReload = marked;
+        List<String> ids = repository.findStreamIdsByConsumerGroup(RedisStreamConfig.GROUP);
+        int capacity = Math.max(expectedInsertions, ids.size());
+        var fresh = new BloomFilter(capacity, falsePositiveRate);
+        ids.forEach(fresh::put);
+        bloomSize.set(ids.size());
+        bloomCapacity = capacity;
+        bloom = fresh;
+        markedDuringReload = null;
+        marked.forEach(fresh::put);
+        ready = true;
+        log.info("Dedup filter loaded {} processed stream IDs", ids.size());
+    }
+
+    /**
+     * Called after compaction deleted rows. Rebuilds only once the filter holds more IDs than it was
+     * sized for (its false-positive rate is then above the configured one); until then the deleted
+     * IDs just stay in it.
+     */
+    void compacted() {
+        if (bloomSize.get() > bloomCapacity) {
+            reload();
+        }
+    }
+
+    /** Forgets everything, including recent IDs, and reloads; for when {@code processed_event} was rewritten. */
+    void reset() {
+        recent.clear();
+        recentSize.set(0);
+        reload();
+    }
+
+    /** Stream IDs are {@code <millis>-<seq>}; ordered numerically, not lexically. */
+    record StreamId(long millis, long seq) implements Comparable<StreamId> {
+        static StreamId parse(String value) {
+            int dash = value == null ? -1 : value.indexOf('-');
+            if (dash <= 0) {
+                return null;
+            }
+            try {
+                return new StreamId(Long.parseLong(value, 0, dash, 10),
+                        Long.parseLong(value, dash + 1, value.length(), 10));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int compareTo(StreamId o) {
+            int c = Long.compare(millis, o.millis);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+
+        @Override
+        public String toString() {
+            return millis + "-" + seq;
+        }
+    }
+
+    /** Minimal thread-safe Bloom filter (double hashing over a 64-bit string hash). */
+    static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashes;
+
+        BloomFilter(int expectedInsertions, double fpp) {
+            long n = Math.max(1, expectedInsertions);
+            long bits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.max(1, (bits + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(String value) {
+            long h = hash64(value);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long prev;
+                do {
+                    prev = words.get(word);
+                } while ((prev & mask) == 0 && !words.compareAndSet(word, prev, prev | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h = hash64(value);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash64(String s) {
+            long h = 0xcbf29ce484222325L; // FNV-1a, then murmur3 finalizer
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb1ca1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
+// endregion
+
+// region Compaction
+/**
+ * Deletes {@code processed_event} rows for stream IDs older than the oldest entry still in the
+ * stream: once trimmed, those messages can never be redelivered, so their dedup rows are dead weight.
+ */
+@Component
+class ProcessedEventCompactor {
+    private static final Logger log = LoggerFactory.getLogger(ProcessedEventCompactor.class);
+
+    private final StringRedisTemplate redis;
+    private final ProcessedEventRepository repository;
+    private final ProcessedEventFilter filter;
+
+    ProcessedEventCompactor(StringRedisTemplate redis, ProcessedEventRepository repository,
+            ProcessedEventFilter filter) {
+        this.redis = redis;
+        this.repository = repository;
+        this.filter = filter;
+    }
+
+    @Scheduled(fixedDelayString = "${availability.dedup.compaction-interval:PT10M}",
+            initialDelayString = "${availability.dedup.compaction-interval:PT10M}")
+    @Transactional
+    public void compact() {
+        var oldest = redis.opsForStream().range(RedisStreamConfig.STREAM, Range.unbounded(), Limit.limit().count(1));
+        if (oldest == null || oldest.isEmpty()) {
+            return; // empty or missing stream: nothing tells us what is safe to forget
+        }
+        var minId = ProcessedEventFilter.StreamId.parse(oldest.get(0).getId().getValue());
+        if (minId == null) {
+            return;
+        }
+        int deleted = repository.deleteOlderThan(RedisStreamConfig.GROUP, minId.millis());
+        if (deleted > 0) {
+            log.info("Compacted {} processed events older than stream MINID {}", deleted, minId);
+            AfterCommit.run(filter::compacted);
+        }
+    }
+}
+// endregion
@@ -0,0 +1,236 @@
+package com.example.availabilityservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Striped consumer mode ({@code availability.stream.consumer-mode=striped}).
+ * <p>
+ * The listener container's polling thread only decodes and hands each record to the stripe owning
+ * its {@code roomId}. Every stripe is a single thread, so events for one room are applied in stream
+ * order while different rooms proceed concurrently. A record is acknowledged once its stripe has
+ * applied it. At most {@code max-in-flight} records are queued across all stripes; beyond that
+ * the polling thread blocks, which caps memory and backs pressure onto the stream.
+ * <p>
+ * A failed apply is retried in place on its stripe, {@code retry-attempts} times in all with a
+ * backoff doubling from {@code retry-backoff}, so a transient error does not let later events of
+ * the room overtake it. If it still fails, the room is <em>held</em> behind that record (the head):
+ * every later record of the room is kept in memory, unapplied and unacknowledged, in stream order.
+ * {@link PendingEventReclaimer} redelivers only the head (see {@link #isWaiting}), so the followers'
+ * delivery counts do not grow while they wait. Once the head is applied or dead-lettered, the
+ * followers are applied in order right away, and the room is released when the last one has gone
+ * through; a follower that fails in turn becomes the new head. A cancel therefore never lands
+ * before the create it cancels.
+ */
+@Component
+@ConditionalOnProperty(name = "availability.stream.consumer-mode", havingValue = "striped")
+class StripedEventDispatcher implements StreamListener<String, MapRecord<String, String, String>>, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(StripedEventDispatcher.class);
+
+    private final AvailabilityService availabilityService;
+    private final StringRedisTemplate redis;
+    private final AvailabilityMetrics metrics;
+    private final ExecutorService[] stripes;
+    private final Semaphore inFlight;
+    private final int retryAttempts;
+    private final Duration retryBackoff;
+    private record Waiting(String streamId, BookingEvent event) {
+    }
+
+    /** Held rooms: records left pending, head first. A room's entry is only touched by its stripe. */
+    private final Map<String, ArrayDeque<Waiting>> held = new ConcurrentHashMap<>();
+    /** Stream IDs queued behind a held head, readable from the reclaimer's thread. */
+    private final Set<String> followers = ConcurrentHashMap.newKeySet();
+
+    StripedEventDispatcher(AvailabilityService availabilityService,
+            StringRedisTemplate redis,
+            AvailabilityMetrics metrics,
+            @Value("${availability.stream.stripes:8}") int stripeCount,
+            @Value("${availability.stream.max-in-flight:512}") int maxInFlight,
+            @Value("${availability.stream.retry-attempts:3}") int retryAttempts,
+            @Value("${availability.stream.retry-backoff:200ms}") Duration retryBackoff,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.availabilityService = availabilityService;
+        this.redis = redis;
+        this.metrics = metrics;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoff = retryBackoff;
+        this.stripes = new ExecutorService[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            String name = "availability-stripe-" + i;
+            ThreadFactory factory = virtualThreads
+                    ? Thread.ofVirtual().name(name).factory()
+                    : r -> new Thread(r, name);
+            stripes[i] = Executors.newSingleThreadExecutor(factory);
+        }
+        log.info("Striped stream dispatcher started ({} stripes, max {} in flight)", stripeCount, maxInFlight);
+    }
+
+    @Override
+    public void onMessage(MapRecord<String, String, String> message) {
+        String streamId = message.getId().getValue();
+        BookingEvent event;
+        try {
+            event = BookingEventListener.decode(message.getValue());
+        } catch (Exception e) {
+            log.warn("Dropping malformed stream message {}: {}", streamId, e.toString());
+            acknowledge(streamId);
+            return;
+        }
+        if (!BookingEventListener.isHandled(event)) {
+            acknowledge(streamId);
+            return;
+        }
+
+        inFlight.acquireUninterruptibly();
+        try {
+            stripes[stripeOf(event.getRoomId())].execute(() -> apply(event, streamId));
+        } catch (RuntimeException e) { // rejected during shutdown
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    int stripeOf(String roomId) {
+        return Math.floorMod(roomId.hashCode(), stripes.length);
+    }
+
+    private void apply(BookingEvent event, String streamId) {
+        try {
+            String roomId = event.getRoomId();
+            ArrayDeque<Waiting> waiting = held.get(roomId);
+            if (waiting == null) {
+                if (!applyWithRetry(event, streamId)) {
+                    waiting = new ArrayDeque<>();
+                    waiting.add(new Waiting(streamId, event));
+                    held.put(roomId, waiting);
+                    log.warn("Holding room {} behind stream message {}", roomId, streamId);
+                }
+            } else if (streamId.equals(waiting.peekFirst().streamId())) {
+                if (applyWithRetry(event, streamId)) {
+                    waiting.removeFirst();
+                    drain(roomId, waiting);
+                }
+            } else if (waiting.stream().noneMatch(w -> w.streamId().equals(streamId))) {
+                waiting.addLast(new Waiting(streamId, event)); // stays pending until its turn
+                followers.add(streamId);
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /** Applies a held room's records in order once its head is gone; the first that fails becomes the head. */
+    private void drain(String roomId, ArrayDeque<Waiting> waiting) {
+        while (!waiting.isEmpty()) {
+            Waiting next = waiting.peekFirst();
+            followers.remove(next.streamId());
+            if (!applyWithRetry(next.event(), next.streamId())) {
+                log.warn("Holding room {} behind stream message {}", roomId, next.streamId());
+                return;
+            }
+            waiting.removeFirst();
+        }
+        held.remove(roomId);
+        log.info("Released room {}", roomId);
+    }
+
+    /** Applies and acknowledges {@code streamId}; false if it still fails after the retries. */
+    private boolean applyWithRetry(BookingEvent event, String streamId) {
+        long backoff = retryBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            long started = System.nanoTime();
+            try {
+                availabilityService.updateAvailabilityForBooking(event, streamId);
+                metrics.eventApplied(started);
+                acknowledge(streamId);
+                return true;
+            } catch (DataIntegrityViolationException duplicate) {
+                metrics.eventConflict(started, event.getRoomId());
+                acknowledge(streamId); // already processed (same stream ID or a re-sent copy)
+                return true;
+            } catch (Exception e) {
+                log.warn("Failed to process stream message {} (attempt {}/{}): {}", streamId, attempt, retryAttempts, e.toString());
+                metrics.eventFailed(started, event.getRoomId());
+                if (attempt >= retryAttempts) {
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // shutting down
+                return false;
+            }
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * Called by {@link PendingEventReclaimer} after it moved {@code message} to the dead-letter stream,
+     * so a held room does not wait for it any longer.
+     */
+    void deadLettered(MapRecord<String, String, String> message) {
+        String roomId;
+        try {
+            roomId = BookingEventListener.decode(message.getValue()).getRoomId();
+        } catch (Exception e) {
+            return; // never held: malformed records are acknowledged on arrival
+        }
+        String streamId = message.getId().getValue();
+        stripes[stripeOf(roomId)].execute(() -> {
+            ArrayDeque<Waiting> waiting = held.get(roomId);
+            if (waiting != null && waiting.removeIf(w -> w.streamId().equals(streamId))) {
+                followers.remove(streamId);
+                drain(roomId, waiting);
+            }
+        });
+    }
+
+    /**
+     * Whether {@code streamId} is queued behind a held room's head. Such records are not attempted
+     * until the head is resolved, so the reclaimer leaves them alone instead of counting deliveries.
+     */
+    boolean isWaiting(String streamId) {
+        return followers.contains(streamId);
+    }
+
+    /** Rooms currently held behind a failed record. */
+    int heldRooms() {
+        return held.size();
+    }
+
+    private void acknowledge(String streamId) {
+        redis.opsForStream().acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, streamId);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ExecutorService stripe : stripes) {
+            stripe.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
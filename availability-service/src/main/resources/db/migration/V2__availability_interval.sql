@@ -0,0 +1,19 @@
+-- Interval storage (availability.storage=interval): one row per run of consecutive nights of a
+-- room with the same total/booked counts, instead of one row per night.
+CREATE TABLE availability.availability_interval (
+  id BIGSERIAL PRIMARY KEY,
+  room_id VARCHAR(128) NOT NULL,
+  start_date DATE NOT NULL,
+  end_date DATE NOT NULL,          -- inclusive
+  total_rooms INT NOT NULL,
+  booked_rooms INT NOT NULL,
+  CONSTRAINT interval_dates CHECK (end_date >= start_date)
+);
+
+-- A room's runs never overlap, so the start date identifies a run
+ALTER TABLE availability.availability_interval
+  ADD CONSTRAINT uniq_room_interval_start UNIQUE (room_id, start_date);
+
+-- Range reads: runs with start_date <= :end and end_date >= :start
+CREATE INDEX idx_availability_interval_room_end
+  ON availability.availability_interval(room_id, end_date);
@@ -0,0 +1,53 @@
+-- Monthly range partitions of availability on available_date, kept up by PartitionMaintenance
+-- (future months created ahead, old months detached). Keys of a partitioned table must contain
+-- the partition column, so the primary key becomes (id, available_date); ids still come from the
+-- same sequence. processed_event stays a plain table: uq_processed must be unique across all
+-- time, and the dedup compaction job already bounds it.
+
+ALTER TABLE availability.availability RENAME TO availability_unpartitioned;
+ALTER TABLE availability.availability_unpartitioned RENAME CONSTRAINT availability_pkey TO availability_unpartitioned_pkey;
+ALTER TABLE availability.availability_unpartitioned RENAME CONSTRAINT uniq_room_day TO uniq_room_day_unpartitioned;
+
+CREATE TABLE availability.availability (
+  id BIGINT NOT NULL DEFAULT nextval('availability.availability_id_seq'),
+  room_id VARCHAR(128) NOT NULL,
+  available_date DATE NOT NULL,
+  total_rooms INT NOT NULL,
+  booked_rooms INT NOT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT availability_pkey PRIMARY KEY (id, available_date),
+  CONSTRAINT uniq_room_day UNIQUE (room_id, available_date)
+) PARTITION BY RANGE (available_date);
+
+-- Keep the sequence when the old table is dropped below
+ALTER SEQUENCE availability.availability_id_seq OWNED BY availability.availability.id;
+
+-- Nights outside every month partition (far future, or history older than the partitions)
+CREATE TABLE availability.availability_default PARTITION OF availability.availability DEFAULT;
+
+-- Months covering the existing rows (at most two years back and three ahead) and the next year
+DO $$
+DECLARE
+  first_month date;
+  last_month date;
+  m date;
+BEGIN
+  SELECT date_trunc('month', GREATEST(LEAST(COALESCE(min(available_date), current_date), current_date),
+                                      current_date - INTERVAL '24 months'))::date,
+         date_trunc('month', LEAST(GREATEST(COALESCE(max(available_date), current_date), current_date + INTERVAL '12 months'),
+                                   current_date + INTERVAL '36 months'))::date
+    INTO first_month, last_month
+    FROM availability.availability_unpartitioned;
+
+  FOR m IN SELECT CAST(g AS date) FROM generate_series(first_month, last_month, INTERVAL '1 month') AS g LOOP
+    EXECUTE format('CREATE TABLE availability.%I PARTITION OF availability.availability FOR VALUES FROM (%L) TO (%L)',
+                   'availability_p' || to_char(m, 'YYYY_MM'), m, CAST(m + INTERVAL '1 month' AS date));
+  END LOOP;
+END $$;
+
+INSERT INTO availability.availability (id, room_id, available_date, total_rooms, booked_rooms, version)
+SELECT id, room_id, available_date, total_rooms, booked_rooms, version
+FROM availability.availability_unpartitioned;
+
+-- idx_availability_room_date is not recreated: uniq_room_day's index has the same columns
+DROP TABLE availability.availability_unpartitioned;
@@ -0,0 +1,11 @@
+-- In-memory engine (availability.engine.enabled=true): one row per applied stay, inserted in the
+-- same transaction as its processed_event row and deleted once written behind to availability.
+-- Replayed on startup, so an acknowledged event survives a crash before write-behind.
+CREATE TABLE availability.engine_journal (
+  id BIGSERIAL PRIMARY KEY,
+  room_id VARCHAR(128) NOT NULL,
+  start_date DATE NOT NULL,
+  end_date DATE NOT NULL,
+  delta INT NOT NULL,
+  created_at TIMESTAMP NOT NULL DEFAULT now()
+);
@@ -0,0 +1,11 @@
+-- A stream ID only identifies one delivery: booking-service's outbox relay re-sends a batch after a
+-- crash between XADD and commit, and the copies get new IDs. The booking key catches those. Rows
+-- written before this migration (and events without a booking id) leave both columns null and are
+-- deduplicated by stream ID only.
+
+ALTER TABLE availability.processed_event ADD COLUMN booking_id BIGINT;
+ALTER TABLE availability.processed_event ADD COLUMN event_type VARCHAR(32);
+
+CREATE UNIQUE INDEX uq_processed_booking_event
+  ON availability.processed_event (consumer_group, booking_id, event_type)
+  WHERE booking_id IS NOT NULL;
@@ -7,14 +7,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(controllers = AvailabilityController.class)
+@WebMvcTest(controllers = { AvailabilityController.class, AvailabilityExportController.class })
 @AutoConfigureMockMvc(addFilters = false) // bypass security filters for slice test
 class AvailabilityControllerWebTest {
 
@@ -22,6 +24,10 @@ class AvailabilityControllerWebTest {
     MockMvc mvc;
     @MockBean
     AvailabilityService availabilityService;
+    @MockBean
+    AvailabilityRepository availabilityRepository; // for the seed runner
+    @MockBean
+    AvailabilityExporter exporter;
 
     @Test
     void happyPath_returns200() throws Exception {
@@ -35,6 +41,22 @@ class AvailabilityControllerWebTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void matrix_returnsRoomByNightGrid() throws Exception {
+        var start = LocalDate.parse("2025-01-01");
+        var end = LocalDate.parse("2025-01-02");
+        when(availabilityService.remainingMatrix(List.of("a", "b"), start, end))
+                .thenReturn(new AvailabilityMatrix(start, end, List.of("a", "b"), new int[][] { { 5, 4 }, { 3, 5 } }));
+
+        mvc.perform(get("/api/availability")
+                .param("roomIds", "a,b")
+                .param("startDate", "2025-01-01")
+                .param("endDate", "2025-01-02"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roomIds[1]").value("b"))
+                .andExpect(jsonPath("$.remaining[0][1]").value(4));
+    }
+
     @Test
     void invalidDates_returns400() throws Exception {
         mvc.perform(get("/api/availability/deluxe-101")
@@ -42,4 +64,15 @@ class AvailabilityControllerWebTest {
                 .param("endDate", "2025-01-01"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void export_streamsWithItsOwnAsyncTimeout() throws Exception {
+        var result = mvc.perform(get("/api/availability/export")
+                .param("startDate", "2025-01-01")
+                .param("endDate", "2025-01-03"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+    }
 }
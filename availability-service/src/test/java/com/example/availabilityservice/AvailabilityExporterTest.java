@@ -0,0 +1,108 @@
+package com.example.availabilityservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class AvailabilityExporterTest {
+
+    private static final LocalDate START = LocalDate.parse("2025-01-01");
+    private static final LocalDate END = LocalDate.parse("2025-01-31");
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet rows = mock(ResultSet.class);
+
+    @Test
+    void cursor_roundTripsRoomIdsWithSeparatorsAndNonAscii() {
+        var cursor = new AvailabilityExporter.Cursor("suite|7 é", LocalDate.parse("2025-02-28"));
+
+        String token = cursor.encode();
+
+        assertThat(token).doesNotContain("=", "+", "/");
+        assertThat(AvailabilityExporter.Cursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursor_rejectsMalformedTokens() {
+        for (String token : new String[] { "not base64!", "bm8tc2VwYXJhdG9y", "MjAyNS0xMy0wMXxyb29t" }) {
+            assertThatThrownBy(() -> AvailabilityExporter.Cursor.decode(token))
+                    .as(token)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    @Test
+    void fullPage_endsWithTheCursorOfItsLastRow() throws Exception {
+        givenRows("deluxe-101", "2025-01-30", "deluxe-102", "2025-01-01");
+
+        String ndjson = export(null, 2);
+
+        String[] lines = ndjson.split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[1]).contains("\"roomId\":\"deluxe-102\"", "\"date\":\"2025-01-01\"");
+        String next = new ObjectMapper().readTree(lines[2]).get("next").asText();
+        assertThat(AvailabilityExporter.Cursor.decode(next))
+                .isEqualTo(new AvailabilityExporter.Cursor("deluxe-102", LocalDate.parse("2025-01-01")));
+    }
+
+    @Test
+    void shortPage_hasNoCursor() throws Exception {
+        givenRows("deluxe-101", "2025-01-30");
+
+        assertThat(export(null, 2)).doesNotContain("next");
+    }
+
+    @Test
+    void cursor_resumesStrictlyAfterItsRow() throws Exception {
+        givenRows();
+
+        export(new AvailabilityExporter.Cursor("deluxe-102", LocalDate.parse("2025-01-01")), 2);
+
+        verify(connection).prepareStatement(contains("AND (room_id, available_date) > (?, ?) ORDER BY room_id, available_date LIMIT ?"));
+        verify(statement).setString(3, "deluxe-102");
+        verify(statement).setObject(4, Date.valueOf("2025-01-01"));
+        verify(statement).setObject(5, 2);
+    }
+
+    private String export(AvailabilityExporter.Cursor after, Integer limit) {
+        var txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        var exporter = new AvailabilityExporter(dataSource, txManager, new ObjectMapper(), 1000, "daily");
+        var out = new ByteArrayOutputStream();
+        exporter.export(null, START, END, after, limit, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Pairs of room id and date, in result order. */
+    private void givenRows(String... roomDatePairs) throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rows);
+        int[] row = { -1 };
+        when(rows.next()).thenAnswer(inv -> ++row[0] < roomDatePairs.length / 2);
+        when(rows.getString(1)).thenAnswer(inv -> roomDatePairs[2 * row[0]]);
+        when(rows.getDate(2)).thenAnswer(inv -> Date.valueOf(roomDatePairs[2 * row[0] + 1]));
+        when(rows.getInt(3)).thenReturn(5);
+        when(rows.getInt(4)).thenReturn(1);
+    }
+}
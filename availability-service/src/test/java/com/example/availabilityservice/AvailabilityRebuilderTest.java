@@ -0,0 +1,108 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AvailabilityRebuilderTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    private static StreamedBookingEvent event(String streamId, long bookingId, String type) {
+        return new StreamedBookingEvent(streamId, new BookingEvent(bookingId, "deluxe-101", DAY, DAY, type));
+    }
+
+    @Test
+    void rebuildFrom_oldestAttachedMonth_soDetachedMonthsAreNotRefilled() {
+        assertThat(AvailabilityRebuilder.rebuildFrom(List.of(YearMonth.of(2025, 5), YearMonth.of(2025, 3), YearMonth.of(2025, 4))))
+                .isEqualTo(LocalDate.of(2025, 3, 1));
+        assertThat(AvailabilityRebuilder.rebuildFrom(List.of())).isBefore(LocalDate.of(1900, 1, 1));
+    }
+
+    @Test
+    void skippable_eventsTheSnapshotAlreadyShows_oncePerBookingAndType() {
+        var created = event("10-0", 1, "BOOKING_CREATED");
+        var resent = event("11-0", 1, "BOOKING_CREATED"); // outbox relay re-sent it
+        var createdThenCancelled = event("12-0", 2, "BOOKING_CREATED");
+        var cancelled = event("13-0", 2, "BOOKING_CANCELLED");
+        var createdCancelledLater = event("14-0", 3, "BOOKING_CREATED");
+        var cancelNotInSnapshot = event("15-0", 3, "BOOKING_CANCELLED");
+        var bookingNotInSnapshot = event("16-0", 4, "BOOKING_CREATED");
+
+        var skip = AvailabilityRebuilder.skippable(
+                Map.of(1L, List.of(created, resent),
+                        2L, List.of(createdThenCancelled, cancelled),
+                        3L, List.of(createdCancelledLater, cancelNotInSnapshot),
+                        4L, List.of(bookingNotInSnapshot)),
+                Map.of(1L, "CREATED", 2L, "CANCELLED", 3L, "CREATED"));
+
+        assertThat(skip).containsExactlyInAnyOrder(created, createdThenCancelled, cancelled, createdCancelledLater);
+    }
+
+    @Test
+    void streamSource_needsTheWholeUntrimmedStream() {
+        assertThatNoException().isThrownBy(() -> AvailabilityRebuilder.requireWholeStream(null,
+                Map.of("length", 3L, "max-deleted-entry-id", "0-0")));
+        assertThatNoException().isThrownBy(() -> AvailabilityRebuilder.requireWholeStream("-", null)); // no stream yet
+
+        assertThatThrownBy(() -> AvailabilityRebuilder.requireWholeStream("1718000000000-0",
+                Map.of("max-deleted-entry-id", "0-0")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AvailabilityRebuilder.requireWholeStream(null,
+                Map.of("max-deleted-entry-id", "1718000000000-5")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("trimmed");
+        assertThatThrownBy(() -> AvailabilityRebuilder.requireWholeStream(null, Map.of("length", 3L))) // Redis 6
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void forEachEntry_pagesAfterTheLastIdOfEachPage() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        StreamOperations<String, String, String> streams = mock(StreamOperations.class);
+        doReturn(streams).when(redis).opsForStream();
+        when(streams.range(eq(RedisStreamConfig.STREAM), any(Range.class), any(Limit.class)))
+                .thenReturn(List.of(entry("1-0"), entry("2-0")), List.of(entry("3-0")), List.of());
+        var rebuilder = new AvailabilityRebuilder(mock(DataSource.class), mock(PlatformTransactionManager.class),
+                redis, mock(ProcessedEventFilter.class), mock(AvailabilityNearCache.class),
+                false, "daily", 1, 100, "booking.booking");
+
+        List<String> seen = new ArrayList<>();
+        rebuilder.forEachEntry("-", "5-0", rec -> seen.add(rec.getId().getValue()));
+
+        assertThat(seen).containsExactly("1-0", "2-0", "3-0");
+        ArgumentCaptor<Range<String>> ranges = ArgumentCaptor.forClass(Range.class);
+        verify(streams, times(3)).range(eq(RedisStreamConfig.STREAM), ranges.capture(), any(Limit.class));
+        assertThat(ranges.getAllValues().get(0).getLowerBound().isBounded()).isFalse();
+        assertThat(ranges.getAllValues().get(1).getLowerBound()).isEqualTo(Range.Bound.exclusive("2-0"));
+        assertThat(ranges.getAllValues().get(2).getLowerBound()).isEqualTo(Range.Bound.exclusive("3-0"));
+        assertThat(ranges.getAllValues()).allSatisfy(r -> assertThat(r.getUpperBound()).isEqualTo(Range.Bound.inclusive("5-0")));
+    }
+
+    private static MapRecord<String, String, String> entry(String id) {
+        return StreamRecords.<String, String, String>mapBacked(Map.of("e", "x"))
+                .withStreamKey(RedisStreamConfig.STREAM).withId(RecordId.of(id));
+    }
+}
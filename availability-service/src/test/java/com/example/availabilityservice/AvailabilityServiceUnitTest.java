@@ -0,0 +1,228 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityServiceUnitTest {
+
+    @Mock
+    AvailabilityRepository availabilityRepository;
+    @Mock
+    ProcessedEventRepository processedEventRepository;
+    @Mock
+    ProcessedEventFilter processedEvents;
+    @Mock
+    AvailabilityNearCache nearCache;
+    @Mock
+    AvailabilityCalendarEngine engine; // disabled: pin() and inWindow() are null
+    @Mock
+    InventoryReconciler inventory;
+    @Mock
+    AvailabilityMetrics metrics;
+    @Mock
+    NightDeltaWriter nightDeltas;
+    @Mock
+    ObjectProvider<IntervalAvailabilityStore> intervalStore; // daily storage: nothing available
+
+    @InjectMocks
+    AvailabilityService service;
+
+    @Test
+    void updatesThreeDays_thenMarksProcessed() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 3); // 3 days inclusive
+        var event = new BookingEvent(42L, "deluxe-101", start, end, "BOOKING_CREATED");
+
+        when(processedEvents.isProcessed("1700000000-0")).thenReturn(false);
+        when(availabilityRepository.bookNights(eq("deluxe-101"), eq(start), eq(end), anyInt()))
+                .thenReturn(List.of(night("2025-01-02", 4), night("2025-01-01", 4), night("2025-01-03", 2)));
+
+        List<LocalDate> nights = service.updateAvailabilityForBooking(event, "1700000000-0");
+
+        // whole range booked with one statement, no per-day read-modify-write
+        verify(availabilityRepository, times(1)).bookNights(eq("deluxe-101"), eq(start), eq(end), anyInt());
+        verify(availabilityRepository, never()).findByRoomIdAndAvailableDate(anyString(), any());
+        verify(availabilityRepository, never()).saveAndFlush(any(Availability.class));
+
+        // reported nights are the stay, in order
+        assertThat(nights).containsExactly(start, start.plusDays(1), end);
+
+        // processed-event recorded with its booking key, and remembered in memory (no transaction here, so immediately)
+        verify(processedEventRepository).save(new ProcessedEvent(null, "availability", "1700000000-0", 42L, "BOOKING_CREATED"));
+        verify(processedEvents).markProcessed("1700000000-0");
+        verify(nearCache).invalidateAndBroadcast("deluxe-101", start, end);
+
+        // reservation counters seeded with what is left per night
+        verify(inventory).reconcile("deluxe-101", List.of(
+                new InventoryReconciler.RoomNight(start, 4),
+                new InventoryReconciler.RoomNight(start.plusDays(1), 4),
+                new InventoryReconciler.RoomNight(end, 2)));
+    }
+
+    @Test
+    void engine_journalsDeltaWithProcessedRow_thenBooksInMemory() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 2);
+        var event = new BookingEvent(5L, "deluxe-101", start, end, "BOOKING_CREATED");
+        when(engine.pin(start, end)).thenReturn(new AvailabilityCalendarEngine.Nights(start, end));
+        when(engine.book("deluxe-101", start, end, 1, 5)).thenReturn(List.of(start, end));
+
+        service.updateAvailabilityForBooking(event, "1700000000-5");
+
+        var inOrder = inOrder(engine, processedEventRepository);
+        inOrder.verify(engine).journal("deluxe-101", start, end, 1);
+        inOrder.verify(processedEventRepository).save(any(ProcessedEvent.class));
+        inOrder.verify(engine).book("deluxe-101", start, end, 1, 5);
+        verifyNoInteractions(availabilityRepository);
+    }
+
+    @Test
+    void engine_stayCrossingWindowStart_booksOnlyTheOutsideNightsInTable() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 4);
+        var windowStart = LocalDate.of(2025, 1, 3);
+        var event = new BookingEvent(6L, "deluxe-101", start, end, "BOOKING_CREATED");
+        when(engine.pin(start, end)).thenReturn(new AvailabilityCalendarEngine.Nights(windowStart, end));
+        when(engine.book("deluxe-101", windowStart, end, 1, 5)).thenReturn(List.of(windowStart, end));
+        when(availabilityRepository.bookNights("deluxe-101", start, windowStart.minusDays(1), 5))
+                .thenReturn(List.of(night("2025-01-01", 4), night("2025-01-02", 4)));
+
+        List<LocalDate> nights = service.updateAvailabilityForBooking(event, "1700000000-6");
+
+        assertThat(nights).containsExactly(start, start.plusDays(1), windowStart, end);
+        // the in-window nights are journaled and booked in memory, never written to the table directly
+        verify(engine).journal("deluxe-101", windowStart, end, 1);
+        verify(engine).book("deluxe-101", windowStart, end, 1, 5);
+        verify(availabilityRepository, times(1)).bookNights(anyString(), any(), any(), anyInt());
+        verify(nearCache).invalidateAndBroadcast("deluxe-101", start, end);
+        verify(inventory).reconcile("deluxe-101", List.of(
+                new InventoryReconciler.RoomNight(start, 4),
+                new InventoryReconciler.RoomNight(start.plusDays(1), 4)));
+    }
+
+    @Test
+    void engine_rangeCrossingWindowEnd_readsTheRestFromTable() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 3);
+        var windowEnd = LocalDate.of(2025, 1, 2);
+        when(engine.inWindow(start, end)).thenReturn(new AvailabilityCalendarEngine.Nights(start, windowEnd));
+        var inMemory = new Availability(null, "deluxe-101", start, 5, 1, null);
+        when(engine.rows("deluxe-101", start, windowEnd)).thenReturn(List.of(inMemory));
+        var stored = new Availability(null, "deluxe-101", end, 5, 2, null);
+        when(nearCache.getRange(eq("deluxe-101"), eq(end), eq(end), any())).thenReturn(List.of(stored));
+
+        assertThat(service.checkAvailability("deluxe-101", start, end)).containsExactly(inMemory, stored);
+    }
+
+    @Test
+    void duplicateStreamId_isNoOp() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 1);
+        var event = new BookingEvent(1L, "deluxe-101", start, end, "BOOKING_CREATED");
+
+        when(processedEvents.isProcessed("dup-1")).thenReturn(true);
+
+        service.updateAvailabilityForBooking(event, "dup-1");
+
+        verifyNoInteractions(availabilityRepository);
+        verify(processedEventRepository, never()).save(any());
+        verify(processedEvents, never()).markProcessed(anyString());
+        verifyNoInteractions(nearCache);
+    }
+
+    @Test
+    void cancellation_releasesNights() {
+        var start = LocalDate.of(2025, 1, 1);
+        var end = LocalDate.of(2025, 1, 2);
+        var event = new BookingEvent(42L, "deluxe-101", start, end, "BOOKING_CANCELLED");
+
+        when(processedEvents.isProcessed("1700000000-1")).thenReturn(false);
+        when(availabilityRepository.releaseNights("deluxe-101", start, end))
+                .thenReturn(List.of(night("2025-01-01", 5, true), night("2025-01-02", 3)));
+
+        service.updateAvailabilityForBooking(event, "1700000000-1");
+
+        verify(availabilityRepository, never()).bookNights(anyString(), any(), any(), anyInt());
+        verify(metrics).clamped("event", 1); // 2025-01-01 had nothing booked
+        verify(processedEventRepository).save(any(ProcessedEvent.class));
+        verify(inventory).reconcile("deluxe-101", List.of(
+                new InventoryReconciler.RoomNight(start, 5),
+                new InventoryReconciler.RoomNight(end, 3)));
+    }
+
+    @Test
+    void batch_writesEachRoomNightOnce() {
+        var fri = LocalDate.of(2025, 1, 10);
+        var sat = LocalDate.of(2025, 1, 11);
+        List<StreamedBookingEvent> batch = new java.util.ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(new StreamedBookingEvent("1700000000-" + i,
+                    new BookingEvent((long) i, "deluxe-101", fri, sat, "BOOKING_CREATED")));
+        }
+        batch.add(new StreamedBookingEvent("1700000000-50",
+                new BookingEvent(3L, "deluxe-101", fri, fri, "BOOKING_CANCELLED")));
+        batch.add(new StreamedBookingEvent("1700000000-50", batch.get(50).event())); // redelivered in the same poll
+
+        var deltas = List.of(new NightDelta("deluxe-101", fri, 49), new NightDelta("deluxe-101", sat, 50));
+        when(nightDeltas.apply(deltas, 5)).thenReturn(java.util.Map.of("deluxe-101", List.of(
+                new InventoryReconciler.RoomNight(fri, 0), new InventoryReconciler.RoomNight(sat, 0))));
+
+        service.applyBatch(batch);
+
+        assertThat(NightDeltaWriter.coalesce(batch.subList(0, 51))).isEqualTo(deltas);
+        verify(nightDeltas, times(1)).apply(deltas, 5);
+        verify(nightDeltas).markProcessed(eq("availability"), argThat(ids -> ids.size() == 51));
+        verifyNoInteractions(availabilityRepository);
+        verify(nearCache).invalidateAndBroadcast("deluxe-101", fri, sat);
+    }
+
+    @Test
+    void batch_countsACopyResentUnderANewStreamIdOnce() {
+        var fri = LocalDate.of(2025, 1, 10);
+        var event = new BookingEvent(9L, "deluxe-101", fri, fri, "BOOKING_CREATED");
+        var batch = List.of(new StreamedBookingEvent("1700000000-0", event),
+                new StreamedBookingEvent("1700000001-0", event)); // outbox relay re-sent it
+        var deltas = List.of(new NightDelta("deluxe-101", fri, 1));
+        when(nightDeltas.apply(deltas, 5)).thenReturn(java.util.Map.of("deluxe-101",
+                List.of(new InventoryReconciler.RoomNight(fri, 4))));
+
+        service.applyBatch(batch);
+
+        verify(nightDeltas).apply(deltas, 5);
+        verify(nightDeltas).markProcessed("availability", batch.subList(0, 1));
+    }
+
+    private static AvailabilityRepository.BookedNight night(String date, int remaining) {
+        return night(date, remaining, false);
+    }
+
+    private static AvailabilityRepository.BookedNight night(String date, int remaining, boolean clamped) {
+        return new AvailabilityRepository.BookedNight() {
+            @Override
+            public String getNight() {
+                return date;
+            }
+
+            @Override
+            public int getRemaining() {
+                return remaining;
+            }
+
+            @Override
+            public boolean getClamped() {
+                return clamped;
+            }
+        };
+    }
+}
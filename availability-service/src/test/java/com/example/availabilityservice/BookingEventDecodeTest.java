@@ -0,0 +1,57 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingEventDecodeTest {
+
+    private static final String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    @Test
+    void compactAndMapFormatsDecodeToTheSameEvent() {
+        byte[] room = "deluxe-101".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(29 + room.length + 25)
+                .put((byte) 1)
+                .put((byte) 0) // BOOKING_CREATED
+                .putLong(42L)
+                .putInt((int) LocalDate.parse("2025-01-10").toEpochDay())
+                .putInt((int) LocalDate.parse("2025-01-12").toEpochDay())
+                .putLong(1735689600000L)
+                .putShort((short) room.length)
+                .put(room)
+                .put((byte) 1)
+                .putLong(0x0af7651916cd43ddL)
+                .putLong(0x8448eb211c80319cL)
+                .putLong(0xb7ad6b7169203331L)
+                .put((byte) 1);
+
+        BookingEvent compact = BookingEventListener.decode(
+                Map.of(CompactBookingEvent.FIELD, Base64.getEncoder().encodeToString(buf.array())));
+        BookingEvent map = BookingEventListener.decode(Map.of(
+                "bookingId", "42",
+                "roomId", "deluxe-101",
+                "startDate", "2025-01-10",
+                "endDate", "2025-01-12",
+                "eventType", "BOOKING_CREATED",
+                "publishedAt", "1735689600000",
+                "traceparent", TRACEPARENT));
+
+        assertThat(compact).isEqualTo(map);
+        assertThat(compact.getTraceparent()).isEqualTo(TRACEPARENT);
+    }
+
+    @Test
+    void unknownCompactVersionIsRejected() {
+        String v9 = Base64.getEncoder().encodeToString(new byte[] { 9, 0 });
+        assertThatThrownBy(() -> CompactBookingEvent.decode(v9))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
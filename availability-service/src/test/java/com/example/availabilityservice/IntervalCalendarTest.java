@@ -0,0 +1,54 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalCalendarTest {
+
+    @Test
+    void longStayOnEmptyCalendar_isOneRun() {
+        assertThat(IntervalCalendar.apply(List.of(), 100, 129, 1, 5).runs())
+                .containsExactly(new Run(100, 129, 5, 1));
+    }
+
+    @Test
+    void overlappingStay_splitsAtBoundaries_andFillsGaps() {
+        var runs = List.of(new Run(100, 109, 5, 1));
+
+        assertThat(IntervalCalendar.apply(runs, 105, 114, 1, 5).runs()).containsExactly(
+                new Run(100, 104, 5, 1),
+                new Run(105, 109, 5, 2),
+                new Run(110, 114, 5, 1));
+    }
+
+    @Test
+    void cancellation_mergesRunsBackTogether() {
+        var split = IntervalCalendar.apply(List.of(new Run(100, 129, 5, 1)), 110, 119, 1, 5).runs();
+        assertThat(split).hasSize(3);
+
+        var merged = IntervalCalendar.apply(split, 110, 119, -1, 5);
+        assertThat(merged.runs()).containsExactly(new Run(100, 129, 5, 1));
+        assertThat(merged.clamped()).isZero();
+    }
+
+    @Test
+    void release_neverGoesBelowZero_norCreatesRuns_andCountsWhatTheFloorDropped() {
+        var runs = List.of(new Run(100, 101, 5, 0), new Run(102, 104, 5, 1));
+
+        var released = IntervalCalendar.apply(runs, 100, 107, -2, 5);
+
+        assertThat(released.runs()).containsExactly(new Run(100, 104, 5, 0));
+        assertThat(released.clamped()).isEqualTo(2 * 2 + 3 * 1); // 2 nights with 0 booked, 3 with 1
+    }
+
+    @Test
+    void at_findsCoveringRun() {
+        var runs = List.of(new Run(100, 104, 5, 1), new Run(110, 119, 3, 3));
+
+        assertThat(IntervalCalendar.at(runs, 112)).isEqualTo(new Run(110, 119, 3, 3));
+        assertThat(IntervalCalendar.at(runs, 107)).isNull();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class InventoryReconcilerTest {
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+
+    @Test
+    void passesCountersThenTheirMarks_remainingThenExpiries_skippingExpiredNights() {
+        var night = LocalDate.now(ZoneOffset.UTC).plusDays(10);
+        var past = LocalDate.now(ZoneOffset.UTC).minusDays(5);
+
+        new InventoryReconciler(redis, true).reconcile("deluxe-101", List.of(
+                new InventoryReconciler.RoomNight(past, 3),
+                new InventoryReconciler.RoomNight(night, 2),
+                new InventoryReconciler.RoomNight(night.plusDays(1), -1)));
+
+        long expiry = night.plusDays(2).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        verify(redis).execute(any(RedisScript.class),
+                eq(List.of("inventory:{deluxe-101}:" + night, "inventory:{deluxe-101}:" + night.plusDays(1),
+                        "inventory:{deluxe-101}:" + night + ":assumed", "inventory:{deluxe-101}:" + night.plusDays(1) + ":assumed")),
+                eq("2"), eq("0"), eq(Long.toString(expiry)), eq(Long.toString(expiry + 86_400)));
+    }
+
+    @Test
+    void disabledOrAllExpired_callsNothing() {
+        new InventoryReconciler(redis, false).reconcile("deluxe-101",
+                List.of(new InventoryReconciler.RoomNight(LocalDate.now().plusDays(1), 1)));
+        new InventoryReconciler(redis, true).reconcile("deluxe-101",
+                List.of(new InventoryReconciler.RoomNight(LocalDate.now().minusDays(3), 1)));
+
+        verifyNoInteractions(redis);
+    }
+}
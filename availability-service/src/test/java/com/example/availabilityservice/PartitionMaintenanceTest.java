@@ -0,0 +1,25 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionMaintenanceTest {
+
+    @Test
+    void createsCurrentMonthAndMonthsAhead() {
+        assertThat(PartitionMaintenance.monthsToCreate(YearMonth.of(2025, 11), 2))
+                .containsExactly(YearMonth.of(2025, 11), YearMonth.of(2025, 12), YearMonth.of(2026, 1));
+    }
+
+    @Test
+    void expiresOnlyMonthsBeforeTheRetainedOnes() {
+        YearMonth current = YearMonth.of(2025, 6);
+
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2025, 3), current, 3)).isFalse();
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2025, 2), current, 3)).isTrue();
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2020, 1), current, 0)).isFalse();
+    }
+}
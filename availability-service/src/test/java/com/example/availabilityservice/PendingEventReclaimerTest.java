@@ -0,0 +1,53 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.RecordId;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PendingEventReclaimerTest {
+
+    private static PendingMessage pending(String id, Duration idle, long deliveries) {
+        return new PendingMessage(RecordId.of(id), Consumer.from(RedisStreamConfig.GROUP, RedisStreamConfig.CONSUMER),
+                idle, deliveries);
+    }
+
+    @Test
+    void retriesIdleEntries_deadLettersOnesAtMaxDeliveries_leavesBusyOnesAlone() {
+        var plan = PendingEventReclaimer.plan(List.of(
+                        pending("1-0", Duration.ofMinutes(5), 1),
+                        pending("2-0", Duration.ofMinutes(5), 5),
+                        pending("3-0", Duration.ofSeconds(10), 9),
+                        pending("4-0", Duration.ofMinutes(1), 4)),
+                Duration.ofMinutes(1), 5, id -> false);
+
+        assertThat(plan.retry()).containsExactly("1-0", "4-0");
+        assertThat(plan.deadLetter()).containsExactly("2-0");
+    }
+
+    @Test
+    void nothingIdle_emptyPlan() {
+        var plan = PendingEventReclaimer.plan(List.of(pending("1-0", Duration.ofSeconds(1), 1)),
+                Duration.ofMinutes(1), 5, id -> false);
+
+        assertThat(plan.retry()).isEmpty();
+        assertThat(plan.deadLetter()).isEmpty();
+    }
+
+    @Test
+    void leavesRecordsWaitingBehindAHeldHeadAlone_evenAtMaxDeliveries() {
+        var plan = PendingEventReclaimer.plan(List.of(
+                        pending("1-0", Duration.ofMinutes(5), 5),
+                        pending("2-0", Duration.ofMinutes(5), 5),
+                        pending("3-0", Duration.ofMinutes(5), 5)),
+                Duration.ofMinutes(1), 5, id -> !id.equals("1-0"));
+
+        assertThat(plan.deadLetter()).containsExactly("1-0");
+        assertThat(plan.retry()).isEmpty();
+    }
+}
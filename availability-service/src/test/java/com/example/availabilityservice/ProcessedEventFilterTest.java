@@ -0,0 +1,43 @@
+package com.example.availabilityservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ProcessedEventFilterTest {
+
+    private final ProcessedEventRepository repository = mock(ProcessedEventRepository.class);
+    // sized for 2 IDs, no recent set: every answer comes from the Bloom filter or the repository
+    private final ProcessedEventFilter filter = new ProcessedEventFilter(repository, 2, 0.01, 0);
+
+    @Test
+    void idMarkedWhileReloading_isInTheSwappedInFilter() {
+        when(repository.findStreamIdsByConsumerGroup(RedisStreamConfig.GROUP)).thenAnswer(inv -> {
+            filter.markProcessed("5-0"); // committed after the query read its snapshot
+            return List.of("1-0");
+        });
+
+        filter.reload();
+
+        filter.isProcessed("5-0");
+        verify(repository).existsByConsumerGroupAndStreamId(RedisStreamConfig.GROUP, "5-0"); // a possible hit, not a miss
+    }
+
+    @Test
+    void compacted_reloadsOnlyOnceTheFilterIsOverItsSize() {
+        when(repository.findStreamIdsByConsumerGroup(RedisStreamConfig.GROUP)).thenReturn(List.of("1-0"));
+        filter.reload();
+
+        filter.markProcessed("2-0");
+        filter.compacted(); // 2 IDs in a filter sized for 2: stale ones only cost false positives
+        verify(repository, times(1)).findStreamIdsByConsumerGroup(RedisStreamConfig.GROUP);
+
+        filter.markProcessed("3-0");
+        filter.compacted();
+        verify(repository, times(2)).findStreamIdsByConsumerGroup(RedisStreamConfig.GROUP);
+        assertThat(filter.isProcessed("9-0")).isFalse();
+    }
+}
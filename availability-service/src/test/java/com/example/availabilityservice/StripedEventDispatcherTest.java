@@ -0,0 +1,109 @@
+package com.example.availabilityservice;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StripedEventDispatcherTest {
+
+    private final AvailabilityService service = mock(AvailabilityService.class);
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final StreamOperations<String, Object, Object> streams = mock(StreamOperations.class);
+
+    private StripedEventDispatcher dispatcher(int attempts) {
+        doReturn(streams).when(redis).opsForStream();
+        return new StripedEventDispatcher(service, redis, mock(AvailabilityMetrics.class),
+                1, 16, attempts, Duration.ofMillis(1), false);
+    }
+
+    private static MapRecord<String, String, String> record(String id, String eventType) {
+        return StreamRecords.<String, String, String>mapBacked(Map.of(
+                        "bookingId", "7",
+                        "roomId", "deluxe-101",
+                        "startDate", "2025-01-10",
+                        "endDate", "2025-01-12",
+                        "eventType", eventType))
+                .withStreamKey(RedisStreamConfig.STREAM)
+                .withId(RecordId.of(id));
+    }
+
+    @Test
+    void cancelWaitsForItsFailedCreate_untilTheCreateIsRedeliveredAndApplied() throws Exception {
+        AtomicInteger createCalls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (createCalls.incrementAndGet() <= 2) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return null;
+        }).when(service).updateAvailabilityForBooking(any(), eq("1-0"));
+        var dispatcher = dispatcher(2);
+
+        dispatcher.onMessage(record("1-0", "BOOKING_CREATED")); // fails twice: room held
+        dispatcher.onMessage(record("2-0", "BOOKING_CANCELLED")); // left pending behind it
+        dispatcher.onMessage(record("1-0", "BOOKING_CREATED")); // reclaimed: applied, then the cancel
+        dispatcher.destroy();
+
+        InOrder inOrder = inOrder(service, streams);
+        inOrder.verify(service, times(3)).updateAvailabilityForBooking(any(), eq("1-0"));
+        inOrder.verify(streams).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "1-0");
+        inOrder.verify(service).updateAvailabilityForBooking(any(), eq("2-0"));
+        inOrder.verify(streams).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "2-0");
+        assertThat(dispatcher.heldRooms()).isZero();
+    }
+
+    @Test
+    void deadLetteringTheHeadReleasesTheRoom() throws Exception {
+        doThrow(new IllegalStateException("bad row")).when(service).updateAvailabilityForBooking(any(), eq("1-0"));
+        var dispatcher = dispatcher(1);
+
+        dispatcher.onMessage(record("1-0", "BOOKING_CREATED"));
+        dispatcher.onMessage(record("2-0", "BOOKING_CREATED"));
+        dispatcher.deadLettered(record("1-0", "BOOKING_CREATED"));
+        dispatcher.destroy();
+
+        verify(service, times(1)).updateAvailabilityForBooking(any(), eq("2-0"));
+        verify(streams).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "2-0");
+        verify(streams, never()).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "1-0");
+        assertThat(dispatcher.heldRooms()).isZero();
+    }
+
+    @Test
+    void poisonHead_healthyFollowersWaitUnclaimed_andAreAppliedInOrderOnceItIsDeadLettered() throws Exception {
+        doThrow(new IllegalStateException("poison")).when(service).updateAvailabilityForBooking(any(), eq("1-0"));
+        var dispatcher = dispatcher(1);
+
+        dispatcher.onMessage(record("1-0", "BOOKING_CREATED"));
+        dispatcher.onMessage(record("2-0", "BOOKING_CANCELLED"));
+        dispatcher.onMessage(record("3-0", "BOOKING_CREATED"));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> dispatcher.isWaiting("3-0"));
+        assertThat(dispatcher.isWaiting("2-0")).isTrue();
+        assertThat(dispatcher.isWaiting("1-0")).isFalse(); // only the head is left for the reclaimer
+        verify(service, never()).updateAvailabilityForBooking(any(), eq("2-0"));
+
+        dispatcher.deadLettered(record("1-0", "BOOKING_CREATED"));
+        dispatcher.destroy();
+
+        InOrder inOrder = inOrder(service, streams);
+        inOrder.verify(service).updateAvailabilityForBooking(any(), eq("2-0"));
+        inOrder.verify(streams).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "2-0");
+        inOrder.verify(service).updateAvailabilityForBooking(any(), eq("3-0"));
+        inOrder.verify(streams).acknowledge(RedisStreamConfig.STREAM, RedisStreamConfig.GROUP, "3-0");
+        assertThat(dispatcher.isWaiting("2-0") || dispatcher.isWaiting("3-0")).isFalse();
+        assertThat(dispatcher.heldRooms()).isZero();
+    }
+}
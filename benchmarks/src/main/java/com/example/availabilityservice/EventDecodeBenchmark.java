@@ -0,0 +1,67 @@
+package com.example.availabilityservice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Stream record to {@link BookingEvent}: the per-message decoding done by every consumer mode. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDecodeBenchmark {
+
+    private MapRecord<String, String, String> record;
+    private MapRecord<String, String, String> compactRecord;
+
+    @Setup
+    public void setUp() {
+        record = StreamRecords.newRecord()
+                .in(RedisStreamConfig.STREAM)
+                .withId(RecordId.of("1735689600000-0"))
+                .ofMap(Map.of(
+                        "bookingId", "123456",
+                        "roomId", "deluxe-101",
+                        "startDate", "2025-01-10",
+                        "endDate", "2025-01-12",
+                        "eventType", "BOOKING_CREATED",
+                        "publishedAt", "1735689600000",
+                        "traceparent", "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01"));
+        // the same event as booking-service writes it with booking.events.encoding=compact
+        compactRecord = StreamRecords.newRecord()
+                .in(RedisStreamConfig.STREAM)
+                .withId(RecordId.of("1735689600000-1"))
+                .ofMap(Map.of(CompactBookingEvent.FIELD,
+                        "AQAAAAAAAAHiQAAAToIAAE6EAAABlB8pfAAACmRlbHV4ZS0xMDEBCvdlGRbNQ92ESOshHIAxnLeta3FpIDMxAQ=="));
+    }
+
+    @Benchmark
+    public BookingEvent decode() {
+        return BookingEventListener.decode(record.getValue());
+    }
+
+    @Benchmark
+    public BookingEvent decodeCompact() {
+        return BookingEventListener.decode(compactRecord.getValue());
+    }
+
+    @Benchmark
+    public boolean decodeAndFilter() {
+        return BookingEventListener.isHandled(BookingEventListener.decode(record.getValue()));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.availabilityservice;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daily rows vs interval runs ({@code availability.storage}) on a serviced-apartment workload:
+ * 30-night stays over 200 rooms, and 90-night range reads of those rooms. Each trial starts with
+ * 20 back-to-back stays per room already applied, so reads and splits work on a realistic calendar.
+ * The row counts of both tables are printed at tear-down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageModelBenchmark {
+    private static final LocalDate START = LocalDate.of(2025, 3, 1);
+    private static final int ROOMS = 200;
+    private static final int STAY = 30;
+
+    @Param({ "daily", "interval" })
+    public String storage;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private AvailabilityService service;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        context = new SpringApplicationBuilder(AvailabilityServiceApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--availability.stream.consumer-mode=off",
+                "--availability.cache.enabled=false",
+                "--availability.storage=" + storage,
+                "--logging.level.root=WARN");
+        service = context.getBean(AvailabilityService.class);
+        for (int stay = 0; stay < 20; stay++) {
+            for (int room = 0; room < ROOMS; room++) {
+                longStay(room, START.plusDays((long) stay * STAY));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        var jdbc = new JdbcTemplate(context.getBean(javax.sql.DataSource.class));
+        System.out.printf("%n[%s] availability rows: %d, availability_interval rows: %d%n", storage,
+                jdbc.queryForObject("SELECT count(*) FROM availability.availability", Long.class),
+                jdbc.queryForObject("SELECT count(*) FROM availability.availability_interval", Long.class));
+        context.close();
+        postgres.close();
+    }
+
+    private List<LocalDate> longStay(int room, LocalDate checkIn) {
+        long n = sequence.incrementAndGet();
+        var event = new BookingEvent(n, "apt-" + room, checkIn, checkIn.plusDays(STAY - 1), "BOOKING_CREATED");
+        return service.updateAvailabilityForBooking(event, n + "-0");
+    }
+
+    /** A 30-night stay at a shifting offset, so most of them split existing runs. */
+    @Benchmark
+    public List<LocalDate> bookLongStay() {
+        long n = sequence.get();
+        return longStay((int) (n % ROOMS), START.plusDays(n % 300));
+    }
+
+    /** 90 nights of one room, expanded to per-night rows. */
+    @Benchmark
+    public List<Availability> readQuarter() {
+        long n = sequence.incrementAndGet();
+        return service.checkAvailability("apt-" + (n % ROOMS), START.plusDays(n % 300), START.plusDays(n % 300 + 89));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.availabilityservice;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AvailabilityService#updateAvailabilityForBooking} end to end against an embedded PostgreSQL:
+ * dedup check, the per-stay upsert, the processed-event insert and the commit.
+ * <p>
+ * The real application context is started with the stream consumer and near cache switched off,
+ * so no Redis is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateAvailabilityBenchmark {
+    private static final LocalDate START = LocalDate.of(2025, 3, 1);
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private AvailabilityService service;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        context = new SpringApplicationBuilder(AvailabilityServiceApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--availability.stream.consumer-mode=off",
+                "--availability.cache.enabled=false",
+                "--logging.level.root=WARN");
+        service = context.getBean(AvailabilityService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    /** Three-night stay spread over 1000 rooms; every call is a new stream ID. */
+    @Benchmark
+    public List<LocalDate> threeNightStay() {
+        long n = sequence.incrementAndGet();
+        var event = new BookingEvent(n, "room-" + (n % 1000), START, START.plusDays(2), "BOOKING_CREATED");
+        return service.updateAvailabilityForBooking(event, n + "-0");
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/** HTTP Basic verification per request: BCrypt every time vs {@link CachedCredentialsAuthenticationProvider}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private DaoAuthenticationProvider bcrypt;
+    private CachedCredentialsAuthenticationProvider cached;
+
+    @Setup
+    public void setUp() {
+        var encoder = new BCryptPasswordEncoder();
+        var users = new InMemoryUserDetailsManager(User.withUsername("user")
+                .password(encoder.encode("password"))
+                .roles("USER")
+                .build());
+        bcrypt = new DaoAuthenticationProvider(encoder);
+        bcrypt.setUserDetailsService(users);
+        cached = new CachedCredentialsAuthenticationProvider(users, encoder, new SimpleMeterRegistry(),
+                true, Duration.ofMinutes(5), 10_000);
+    }
+
+    @Benchmark
+    public Authentication bcryptEveryRequest() {
+        return bcrypt.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "password"));
+    }
+
+    @Benchmark
+    public Authentication cachedCredentials() {
+        return cached.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "password"));
+    }
+}
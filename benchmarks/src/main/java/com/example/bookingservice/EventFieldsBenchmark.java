@@ -0,0 +1,42 @@
+package com.example.bookingservice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Event record built by {@code createBooking} for every booking, before it is published. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventFieldsBenchmark {
+
+    private final Booking booking = new Booking(123456L, "deluxe-101",
+            LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 12), "CREATED");
+
+    private final String traceparent = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    @Benchmark
+    public Map<String, String> eventFields() {
+        return BookingAppService.eventFields(booking, "BOOKING_CREATED");
+    }
+
+    /** What {@link BookingEventEncoding} publishes once the compact format is negotiated. */
+    @Benchmark
+    public String compactEncode() {
+        return CompactBookingEvent.encode(booking.getId(), booking.getRoomId(), booking.getStartDate(),
+                booking.getEndDate(), "BOOKING_CREATED", System.currentTimeMillis(), traceparent);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+// region Publisher
+/**
+ * Micro-batching stream publisher ({@code booking.events.publish-mode=async}).
+ * <p>
+ * Events are queued and a single flusher thread writes them as pipelined XADDs once
+ * {@code max-batch} events are waiting or {@code flush-window} has passed since the first one,
+ * whichever comes first. Each caller gets a future for its record ID. When the queue is full,
+ * {@code overflow} decides: {@code block} the caller for up to {@code block-timeout} (then fail it),
+ * {@code fail-fast}, or {@code spill} to the outbox table (relayed later; the future then completes
+ * with {@code null}).
+ * <p>
+ * Submits usually come from an after-commit callback, where the booking's connection is still
+ * checked out. {@code block-timeout} therefore bounds how long a full queue can hold a pool
+ * connection per request, and spills run in their own transaction ({@code REQUIRES_NEW}): the
+ * booking's transaction has already committed and would silently drop anything written in it.
+ * Use {@code spill} when no event may be lost.
+ * <p>
+ * Once stopping, {@code submit} rejects every event with {@link RejectedExecutionException}. Events
+ * still queued when the flusher exits (drain timeout, interrupt) are spilled under {@code spill}
+ * and failed otherwise, so no future is left incomplete.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.events.publish-mode", havingValue = "async")
+class BatchingStreamPublisher implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(BatchingStreamPublisher.class);
+
+    enum OverflowPolicy { BLOCK, FAIL_FAST, SPILL }
+
+    private record Pending(Map<String, String> fields, CompletableFuture<RecordId> future) {
+    }
+
+    private final PipelinedStreamWriter writer;
+    private final OutboxRepository outbox;
+    private final TransactionTemplate spillTx;
+    private final MicroBatcher<Pending> batcher;
+    private final OverflowPolicy overflow;
+    private final Duration blockTimeout;
+
+    BatchingStreamPublisher(PipelinedStreamWriter writer,
+            OutboxRepository outbox,
+            PlatformTransactionManager txManager,
+            MeterRegistry registry,
+            @Value("${booking.publisher.queue-capacity:10000}") int capacity,
+            @Value("${booking.publisher.max-batch:256}") int maxBatch,
+            @Value("${booking.publisher.flush-window:2ms}") Duration flushWindow,
+            @Value("${booking.publisher.overflow:block}") OverflowPolicy overflow,
+            @Value("${booking.publisher.block-timeout:1s}") Duration blockTimeout) {
+        this.writer = writer;
+        this.outbox = outbox;
+        this.spillTx = new TransactionTemplate(txManager);
+        this.spillTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batcher = new MicroBatcher<>("booking-stream-publisher", capacity, maxBatch, flushWindow,
+                this::flush, this::abandon);
+        this.overflow = overflow;
+        this.blockTimeout = blockTimeout;
+        Gauge.builder("booking.publisher.queue", batcher, MicroBatcher::size)
+                .description("Events waiting to be flushed to the stream")
+                .register(registry);
+    }
+
+    /** Queues one event; the future completes once its XADD has been acknowledged by Redis. */
+    CompletableFuture<RecordId> submit(Map<String, String> fields) {
+        var pending = new Pending(fields, new CompletableFuture<>());
+        if (batcher.offer(pending)) {
+            return pending.future();
+        }
+        if (!batcher.isRunning()) {
+            pending.future().completeExceptionally(new RejectedExecutionException("Stream publisher stopped"));
+            return pending.future();
+        }
+        switch (overflow) {
+            case BLOCK -> {
+                try {
+                    if (!batcher.put(pending, blockTimeout)) {
+                        pending.future().completeExceptionally(new RejectedExecutionException(batcher.isRunning()
+                                ? "Stream publisher queue still full after " + blockTimeout
+                                : "Stream publisher stopped"));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    pending.future().completeExceptionally(e);
+                }
+            }
+            case FAIL_FAST -> pending.future().completeExceptionally(
+                    new RejectedExecutionException("Stream publisher queue is full"));
+            case SPILL -> spill(List.of(pending));
+        }
+        return pending.future();
+    }
+
+    /** Queued but never flushed: the outbox still takes it under {@code spill}. */
+    private void abandon(Pending pending) {
+        if (pending.future().isDone()) {
+            return; // flushed before the flusher was interrupted
+        }
+        if (overflow == OverflowPolicy.SPILL) {
+            spill(List.of(pending));
+        } else {
+            pending.future().completeExceptionally(new RejectedExecutionException("Stream publisher stopped"));
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            List<RecordId> ids = writer.addAll(BookingEventPublisher.STREAM_KEY,
+                    batch.stream().map(Pending::fields).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(ids.get(i));
+            }
+        } catch (Exception e) {
+            log.warn("Pipelined XADD of {} events failed: {}", batch.size(), e.toString());
+            if (overflow == OverflowPolicy.SPILL) {
+                spill(batch);
+            } else {
+                batch.forEach(p -> p.future().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void spill(List<Pending> pending) {
+        try {
+            spillTx.executeWithoutResult(status -> outbox.saveAll(pending.stream()
+                    .map(p -> new OutboxEvent(null, BookingEventPublisher.STREAM_KEY, p.fields(), Instant.now(), null))
+                    .toList()));
+            pending.forEach(p -> p.future().complete(null));
+        } catch (Exception e) {
+            pending.forEach(p -> p.future().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public void start() {
+        batcher.start();
+    }
+
+    /** Lets the flusher drain whatever is already queued (up to 10s), then stops it. */
+    @Override
+    public void stop() {
+        stop(Duration.ofSeconds(10));
+    }
+
+    void stop(Duration drainTimeout) {
+        batcher.stop(drainTimeout);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return batcher.isRunning();
+    }
+}
+// endregion
+
+// region BookingEventPublisher adapter
+/** {@code async}: submits to {@link BatchingStreamPublisher} once the booking transaction commits. */
+@Component
+@ConditionalOnProperty(name = "booking.events.publish-mode", havingValue = "async")
+class AsyncBookingEventPublisher implements BookingEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(AsyncBookingEventPublisher.class);
+
+    private final BatchingStreamPublisher publisher;
+
+    AsyncBookingEventPublisher(BatchingStreamPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void publish(Map<String, String> fields) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(fields);
+                }
+            });
+        } else {
+            submit(fields);
+        }
+    }
+
+    private void submit(Map<String, String> fields) {
+        publisher.submit(fields).whenComplete((id, e) -> {
+            if (e != null) {
+                log.warn("Failed to publish event for booking {}: {}", fields.get("bookingId"), e.toString());
+            }
+        });
+    }
+}
+// endregion
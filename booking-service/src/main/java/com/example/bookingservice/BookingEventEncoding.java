@@ -0,0 +1,180 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// region Codec
+/**
+ * Compact form of a booking event: a single stream field {@code e} holding base64 of
+ * <pre>
+ * byte   schema version (1)
+ * byte   event type ordinal in {@link #EVENT_TYPES}
+ * long   bookingId
+ * int    startDate, endDate (epoch days)
+ * long   publishedAt (epoch millis)
+ * short  roomId length, then roomId (UTF-8)
+ * byte   traceparent kind: 0 none, 1 W3C version 00 (long trace-id high, long trace-id low,
+ *        long parent-id, byte flags), 2 other (short length, then UTF-8)
+ * </pre>
+ * Base64 keeps the value safe for consumers that read stream fields as strings.
+ */
+final class CompactBookingEvent {
+    static final String FIELD = "e";
+    static final byte VERSION = 1;
+    /** Append only: the ordinal is what goes on the wire. */
+    static final List<String> EVENT_TYPES = List.of("BOOKING_CREATED", "BOOKING_CANCELLED");
+
+    private CompactBookingEvent() {
+    }
+
+    /** The encoded record, or {@code null} if {@code eventType} has no ordinal yet (send it as a map). */
+    static String encode(long bookingId, String roomId, LocalDate startDate, LocalDate endDate,
+            String eventType, long publishedAt, String traceparent) {
+        int type = EVENT_TYPES.indexOf(eventType);
+        if (type < 0) {
+            return null;
+        }
+        byte[] room = roomId.getBytes(StandardCharsets.UTF_8);
+        boolean w3c = isW3c(traceparent);
+        byte[] trace = traceparent == null || w3c ? null : traceparent.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 1 + 8 + 4 + 4 + 8 + 2 + room.length + 1
+                + (w3c ? 25 : trace != null ? 2 + trace.length : 0);
+
+        ByteBuffer buf = ByteBuffer.allocate(size)
+                .put(VERSION)
+                .put((byte) type)
+                .putLong(bookingId)
+                .putInt((int) startDate.toEpochDay())
+                .putInt((int) endDate.toEpochDay())
+                .putLong(publishedAt)
+                .putShort((short) room.length)
+                .put(room);
+        if (w3c) {
+            buf.put((byte) 1)
+                    .putLong(HexFormat.fromHexDigitsToLong(traceparent, 3, 19))
+                    .putLong(HexFormat.fromHexDigitsToLong(traceparent, 19, 35))
+                    .putLong(HexFormat.fromHexDigitsToLong(traceparent, 36, 52))
+                    .put((byte) HexFormat.fromHexDigits(traceparent, 53, 55));
+        } else if (trace != null) {
+            buf.put((byte) 2).putShort((short) trace.length).put(trace);
+        } else {
+            buf.put((byte) 0);
+        }
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    /** {@code 00-<32 hex>-<16 hex>-<2 hex>}, lower case as {@link TraceParent} writes it. */
+    private static boolean isW3c(String tp) {
+        if (tp == null || tp.length() != 55 || !tp.startsWith("00-")
+                || tp.charAt(35) != '-' || tp.charAt(52) != '-') {
+            return false;
+        }
+        for (int i = 3; i < 55; i++) {
+            char c = tp.charAt(i);
+            if (i != 35 && i != 52 && !(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+// endregion
+
+// region Negotiation
+/**
+ * Builds the stream fields of booking events in the format every consumer can read.
+ * <p>
+ * With {@code booking.events.encoding=compact}, events are written as {@link CompactBookingEvent}
+ * once every consumer group of the stream has advertised {@value #COMPACT} in the
+ * {@value #CODECS_KEY} hash (group name to comma-separated formats). Until then, and whenever a
+ * group without that entry shows up, the map format is used. The decision is refreshed every
+ * {@code booking.events.encoding-refresh}.
+ */
+@Component
+class BookingEventEncoding {
+    private static final Logger log = LoggerFactory.getLogger(BookingEventEncoding.class);
+    static final String CODECS_KEY = BookingEventPublisher.STREAM_KEY + ":codecs";
+    static final String COMPACT = "compact-v1";
+
+    private final StringRedisTemplate redis;
+    private final boolean compactWanted;
+    private volatile boolean compact;
+
+    BookingEventEncoding(StringRedisTemplate redis,
+            MeterRegistry registry,
+            @Value("${booking.events.encoding:map}") String encoding) {
+        this.redis = redis;
+        this.compactWanted = "compact".equalsIgnoreCase(encoding);
+        Gauge.builder("booking.events.compact", this, e -> e.compact ? 1 : 0)
+                .description("1 while booking events are published in the compact binary format")
+                .register(registry);
+    }
+
+    Map<String, String> fields(Booking booking, String eventType) {
+        return fields(booking, eventType, TraceParent.fromCurrentRequest());
+    }
+
+    /** Compact when negotiated, else {@link BookingAppService#eventFields(Booking, String, String)}. */
+    Map<String, String> fields(Booking booking, String eventType, String traceparent) {
+        if (compact) {
+            String encoded = CompactBookingEvent.encode(booking.getId(), booking.getRoomId(),
+                    booking.getStartDate(), booking.getEndDate(), eventType, System.currentTimeMillis(), traceparent);
+            if (encoded != null) {
+                return Map.of(CompactBookingEvent.FIELD, encoded);
+            }
+        }
+        return BookingAppService.eventFields(booking, eventType, traceparent);
+    }
+
+    @Scheduled(fixedDelayString = "${booking.events.encoding-refresh:PT30S}")
+    public void refresh() {
+        if (!compactWanted) {
+            return;
+        }
+        boolean next;
+        try {
+            next = allGroupsAccept(COMPACT);
+        } catch (Exception e) {
+            log.debug("Could not negotiate event encoding: {}", e.toString());
+            next = false;
+        }
+        if (next != compact) {
+            log.info("Publishing booking events as {}", next ? COMPACT : "map");
+            compact = next;
+        }
+    }
+
+    private boolean allGroupsAccept(String format) {
+        StreamInfo.XInfoGroups groups = redis.execute((RedisCallback<StreamInfo.XInfoGroups>) (RedisConnection c) ->
+                c.streamCommands().xInfoGroups(BookingEventPublisher.STREAM_KEY.getBytes(StandardCharsets.UTF_8)));
+        if (groups == null || groups.isEmpty()) {
+            return false; // nobody to ask yet
+        }
+        Map<Object, Object> advertised = redis.opsForHash().entries(CODECS_KEY);
+        for (String group : groups.stream().map(StreamInfo.XInfoGroup::groupName).toList()) {
+            Object formats = advertised.get(group);
+            if (formats == null || !List.of(formats.toString().split(",")).contains(format)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+// endregion
@@ -0,0 +1,95 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands a booking event to the {@code booking-events} stream. Called from inside the booking
+ * transaction; the implementation is chosen by {@code booking.events.publish-mode}.
+ */
+interface BookingEventPublisher {
+    String STREAM_KEY = "booking-events";
+
+    void publish(Map<String, String> fields);
+
+    /** Publishes several events; implementations override this to use one round trip. */
+    default void publishAll(List<Map<String, String>> events) {
+        events.forEach(this::publish);
+    }
+}
+
+/** {@code outbox} (default): writes the event to {@code outbox_event} in the caller's transaction. */
+@Component
+@ConditionalOnProperty(name = "booking.events.publish-mode", havingValue = "outbox", matchIfMissing = true)
+class OutboxBookingEventPublisher implements BookingEventPublisher {
+
+    private final OutboxRepository outbox;
+
+    OutboxBookingEventPublisher(OutboxRepository outbox) {
+        this.outbox = outbox;
+    }
+
+    @Override
+    public void publish(Map<String, String> fields) {
+        outbox.save(new OutboxEvent(null, STREAM_KEY, fields, Instant.now(), null));
+    }
+
+    @Override
+    public void publishAll(List<Map<String, String>> events) {
+        Instant now = Instant.now();
+        outbox.saveAll(events.stream().map(f -> new OutboxEvent(null, STREAM_KEY, f, now, null)).toList());
+    }
+}
+
+/** {@code direct}: synchronous XADD on the request thread; failures are logged and the event is lost. */
+@Component
+@ConditionalOnProperty(name = "booking.events.publish-mode", havingValue = "direct")
+class DirectBookingEventPublisher implements BookingEventPublisher {
+    private static final Logger log = LoggerFactory.getLogger(DirectBookingEventPublisher.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PipelinedStreamWriter writer;
+    private final Timer xaddLatency;
+
+    DirectBookingEventPublisher(StringRedisTemplate stringRedisTemplate, PipelinedStreamWriter writer,
+            MeterRegistry registry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.writer = writer;
+        this.xaddLatency = Timer.builder("booking.stream.xadd")
+                .description("Round trip of one XADD call (a whole pipeline counts as one)")
+                .tag("kind", "single")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void publish(Map<String, String> fields) {
+        try {
+            var record = StreamRecords.newRecord().in(STREAM_KEY).ofMap(fields);
+            xaddLatency.record(() -> stringRedisTemplate.opsForStream().add(record));
+            log.info("Published event to {} for booking {}", STREAM_KEY, fields.get("bookingId"));
+        } catch (Exception e) {
+            log.warn("Failed to publish to Redis stream {}: {}", STREAM_KEY, e.toString());
+        }
+    }
+
+    @Override
+    public void publishAll(List<Map<String, String>> events) {
+        try {
+            writer.addAll(STREAM_KEY, events);
+            log.info("Published {} events to {}", events.size(), STREAM_KEY);
+        } catch (Exception e) {
+            log.warn("Failed to publish {} events to Redis stream {}: {}", events.size(), STREAM_KEY, e.toString());
+        }
+    }
+}
@@ -1,23 +1,30 @@
 package com.example.bookingservice;
 
 import jakarta.persistence.*;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.redis.connection.stream.StreamRecords;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -25,17 +32,21 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @SpringBootApplication
+@EnableScheduling
 public class BookingServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(BookingServiceApplication.class, args);
@@ -90,7 +101,8 @@ public class BookingServiceApplication {
 @AllArgsConstructor
 class Booking {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "booking_seq", allocationSize = 50)
     private Long id;
 
     private String roomId;
@@ -113,44 +125,212 @@ class BookingEvent implements Serializable {
 
 // region Repository
 interface BookingRepository extends JpaRepository<Booking, Long> {
-    List<Booking> findByRoomId(String roomId);
+    /**
+     * Loads the booking with a row lock held until the transaction ends. Its start_date comes from
+     * booking_id (V6), so only the booking's own month partition is read.
+     */
+    @Query(value = """
+            SELECT b.* FROM booking.booking b
+            WHERE b.id = :id
+              AND b.start_date = (SELECT k.start_date FROM booking.booking_id k WHERE k.id = :id)
+            FOR UPDATE OF b
+            """, nativeQuery = true)
+    Optional<Booking> lockById(@Param("id") long id);
+
+    /**
+     * Sets the status of a booking, addressed by its full key so only its partition is touched
+     * (an entity update would match on id alone). Clears the persistence context.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Booking b set b.status = :status where b.id = :id and b.startDate = :startDate")
+    int updateStatus(@Param("id") long id, @Param("startDate") LocalDate startDate, @Param("status") String status);
+
+    /**
+     * One page of a room's bookings in {@code (startDate, id)} order, starting after the keyset
+     * {@code (afterDate, afterId)}. Walks idx_booking_room_start_id, so cost does not grow with history;
+     * the plain {@code startDate >= :afterDate} bound lets the planner skip older month partitions.
+     */
+    @Query("""
+            select b from Booking b
+            where b.roomId = :roomId
+              and b.startDate >= :afterDate
+              and b.startDate <= :to
+              and (b.startDate > :afterDate or (b.startDate = :afterDate and b.id > :afterId))
+              and (:status is null or b.status = :status)
+            order by b.startDate, b.id
+            """)
+    List<Booking> findPage(@Param("roomId") String roomId,
+            @Param("afterDate") LocalDate afterDate,
+            @Param("afterId") long afterId,
+            @Param("to") LocalDate to,
+            @Param("status") String status,
+            Limit limit);
+}
+
+/** One entry of {@code POST /api/bookings/batch}. */
+record BookingRequest(@NotBlank String roomId, @NotNull LocalDate startDate, @NotNull LocalDate endDate) {
+}
+
+/** A page of bookings plus the cursor for the next one ({@code null} on the last page). */
+record BookingPage(List<Booking> items, String nextCursor) {
 }
 
 // region Service
 @org.springframework.stereotype.Service
 @RequiredArgsConstructor
 class BookingAppService {
-    private static final Logger log = LoggerFactory.getLogger(BookingAppService.class);
-    private static final String STREAM_KEY = "booking-events";
-
     private final BookingRepository repository;
-    private final StringRedisTemplate stringRedisTemplate; // simple strings
+    private final BookingEventPublisher eventPublisher;
+    private final CapacityReservations reservations;
+    private final TransactionTemplate tx;
+    private final ObjectProvider<GroupCommitter> groupCommitter;
+    private final BookingEventEncoding eventEncoding;
 
+    /**
+     * Reserves capacity (when enabled), then persists the booking and enlists its event in one
+     * transaction (see {@link BookingEventPublisher}), shared with concurrent requests when group
+     * commit is enabled (see {@link GroupCommitter}). The reservation is released if that fails,
+     * but kept when group commit cannot tell whether the booking was stored.
+     *
+     * @throws OverbookedException if a night of the stay has no rooms left
+     */
     public Booking createBooking(String roomId, LocalDate start, LocalDate end) {
-        // 1) Persist
-        Booking booking = repository.save(new Booking(null, roomId, start, end, "CREATED"));
+        // 1) Reserve: one Redis round trip, all nights or none
+        reservations.reserve(roomId, start, end);
+        try {
+            GroupCommitter group = groupCommitter.getIfAvailable();
+            if (group != null) {
+                // 2+3) Persist and publish in a transaction shared with concurrent requests
+                return group.commit(new BookingRequest(roomId, start, end));
+            }
+            return tx.execute(status -> {
+                // 2) Persist
+                Booking booking = repository.save(new Booking(null, roomId, start, end, "CREATED"));
 
-        // 2) Publish a simple String map
-        Map<String, String> map = Map.of(
-                "bookingId", booking.getId().toString(),
-                "roomId", roomId,
-                "startDate", start.toString(),
-                "endDate", end.toString(),
-                "eventType", "BOOKING_CREATED");
+                // 3) Publish a simple String map (or its compact form, see BookingEventEncoding)
+                eventPublisher.publish(eventEncoding.fields(booking, "BOOKING_CREATED"));
+                return booking;
+            });
+        } catch (GroupCommitter.OutcomeUnknownException e) {
+            throw e; // the booking may exist; a held reservation beats an overbooking
+        } catch (RuntimeException e) {
+            reservations.release(roomId, start, end);
+            throw e;
+        }
+    }
 
+    /**
+     * Creates all bookings or none: every stay is reserved first (one pipelined Redis round trip),
+     * then the rows are inserted in JDBC batches (sequence ids, {@code hibernate.jdbc.batch_size})
+     * and the events published together in the same transaction. The reservations are released if
+     * anything fails.
+     *
+     * @throws OverbookedException if any stay has a night without rooms left
+     */
+    public List<Booking> createBookings(List<BookingRequest> requests) {
+        reservations.reserveAll(requests);
         try {
-            var record = StreamRecords.newRecord().in(STREAM_KEY).ofMap(map);
-            stringRedisTemplate.opsForStream().add(record);
-            log.info("Published event to {} for booking {}", STREAM_KEY, booking.getId());
-        } catch (Exception e) {
-            log.warn("Failed to publish to Redis stream {}: {}", STREAM_KEY, e.toString());
+            return tx.execute(status -> {
+                List<Booking> bookings = repository.saveAll(requests.stream()
+                        .map(r -> new Booking(null, r.roomId(), r.startDate(), r.endDate(), "CREATED"))
+                        .toList());
+                eventPublisher.publishAll(bookings.stream()
+                        .map(b -> eventEncoding.fields(b, "BOOKING_CREATED"))
+                        .toList());
+                return bookings;
+            });
+        } catch (RuntimeException e) {
+            reservations.releaseAll(requests);
+            throw e;
         }
+    }
 
+    /**
+     * Marks the booking {@code CANCELLED} and publishes {@code BOOKING_CANCELLED} in one transaction,
+     * then gives its nights back to the reservation counters. Cancelling a cancelled booking changes
+     * nothing and publishes nothing.
+     *
+     * @return the booking, or empty if there is none with this id
+     */
+    public Optional<Booking> cancelBooking(long id) {
+        boolean[] cancelled = { false };
+        Optional<Booking> booking = tx.execute(status -> repository.lockById(id).map(b -> {
+            if (!"CANCELLED".equals(b.getStatus())) {
+                repository.updateStatus(b.getId(), b.getStartDate(), "CANCELLED");
+                b.setStatus("CANCELLED"); // detached by the update; only the returned copy changes
+                eventPublisher.publish(eventEncoding.fields(b, "BOOKING_CANCELLED"));
+                cancelled[0] = true;
+            }
+            return b;
+        }));
+        if (cancelled[0]) {
+            booking.ifPresent(b -> reservations.release(b.getRoomId(), b.getStartDate(), b.getEndDate()));
+        }
         return booking;
     }
 
-    public List<Booking> byRoom(String roomId) {
-        return repository.findByRoomId(roomId);
+    static Map<String, String> eventFields(Booking booking, String eventType) {
+        return eventFields(booking, eventType, TraceParent.fromCurrentRequest());
+    }
+
+    /**
+     * Stream fields of a booking event. {@code publishedAt} (epoch millis) and {@code traceparent}
+     * let availability-service measure how long the booking takes to become visible there.
+     */
+    static Map<String, String> eventFields(Booking booking, String eventType, String traceparent) {
+        return Map.of(
+                "bookingId", booking.getId().toString(),
+                "roomId", booking.getRoomId(),
+                "startDate", booking.getStartDate().toString(),
+                "endDate", booking.getEndDate().toString(),
+                "eventType", eventType,
+                "publishedAt", Long.toString(System.currentTimeMillis()),
+                TraceParent.HEADER, traceparent);
+    }
+
+    /**
+     * Bookings of a room whose start date lies in [from, to] (either bound optional), optionally
+     * filtered by status, {@code limit} at a time. {@code cursor} is the previous page's
+     * {@link BookingPage#nextCursor()}. Without a limit every matching booking is returned in one page.
+     */
+    public BookingPage byRoom(String roomId, LocalDate from, LocalDate to, String status, String cursor, Integer limit) {
+        LocalDate afterDate = from != null ? from : LocalDate.EPOCH;
+        long afterId = 0; // ids start at 1, so the first page includes bookings starting on 'from'
+        if (cursor != null) {
+            String[] parts = decodeCursor(cursor);
+            afterDate = LocalDate.parse(parts[0]);
+            afterId = Long.parseLong(parts[1]);
+        }
+        LocalDate until = to != null ? to : LocalDate.of(9999, 12, 31);
+
+        if (limit == null) {
+            return new BookingPage(repository.findPage(roomId, afterDate, afterId, until, status, Limit.unlimited()), null);
+        }
+        List<Booking> rows = repository.findPage(roomId, afterDate, afterId, until, status, Limit.of(limit + 1));
+        if (rows.size() <= limit) {
+            return new BookingPage(rows, null);
+        }
+        List<Booking> page = rows.subList(0, limit);
+        Booking last = page.get(limit - 1);
+        return new BookingPage(page, encodeCursor(last.getStartDate() + "|" + last.getId()));
+    }
+
+    private static String encodeCursor(String keyset) {
+        return java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(keyset.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String keyset = new String(java.util.Base64.getUrlDecoder().decode(cursor),
+                    java.nio.charset.StandardCharsets.UTF_8);
+            String[] parts = keyset.split("\\|", 2);
+            LocalDate.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 }
 
@@ -161,8 +341,13 @@ class BookingAppService {
 @RequiredArgsConstructor
 class BookingController {
 
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+
     private final BookingAppService app;
 
+    @Value("${booking.batch.max-size:500}")
+    private int maxBatchSize;
+
     @PostMapping
     public ResponseEntity<Booking> createBooking(
             @RequestParam @NotBlank String roomId,
@@ -177,9 +362,48 @@ class BookingController {
         return ResponseEntity.status(201).body(b);
     }
 
+    /** Bulk create for group and tour operators; all bookings are created or none (409 if any is overbooked). */
+    @PostMapping("/batch")
+    public ResponseEntity<List<Booking>> createBookings(@RequestBody @NotEmpty List<@Valid BookingRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " bookings per batch");
+        }
+        for (BookingRequest r : requests) {
+            if (r.endDate().isBefore(r.startDate())) {
+                throw new IllegalArgumentException("endDate must be on or after startDate (room " + r.roomId() + ")");
+            }
+        }
+        return ResponseEntity.status(201).body(app.createBookings(requests));
+    }
+
+    /** Frees the stay's nights. 200 with the booking (also if it was already cancelled), 404 if there is none. */
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<Booking> cancelBooking(@PathVariable long id) {
+        return ResponseEntity.of(app.cancelBooking(id));
+    }
+
+    /**
+     * Keyset-paginated listing ordered by {@code (startDate, id)}. The body stays a plain array; when
+     * more bookings follow, the {@value #NEXT_CURSOR} header carries the cursor for the next page.
+     * Without {@code limit} the whole list is returned, as before paging was added.
+     */
     @GetMapping("/room/{roomId}")
-    public ResponseEntity<List<Booking>> list(@PathVariable @NotBlank String roomId) {
-        return ResponseEntity.ok(app.byRoom(roomId));
+    public ResponseEntity<List<Booking>> list(@PathVariable @NotBlank String roomId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) @Min(1) @Max(1000) Integer limit) {
+
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("to must be on or after from");
+        }
+        BookingPage page = app.byRoom(roomId, from, to, status, cursor, limit);
+        var response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 }
 
@@ -192,6 +416,21 @@ class ApiErrors {
         return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
     }
 
+    @org.springframework.web.bind.annotation.ExceptionHandler(OverbookedException.class)
+    ResponseEntity<?> conflict(OverbookedException e) {
+        return ResponseEntity.status(409).body(java.util.Map.of("error", e.getMessage()));
+    }
+
+    @org.springframework.web.bind.annotation.ExceptionHandler(java.util.concurrent.RejectedExecutionException.class)
+    ResponseEntity<?> overloaded(java.util.concurrent.RejectedExecutionException e) {
+        return ResponseEntity.status(503).header("Retry-After", "1").body(java.util.Map.of("error", e.getMessage()));
+    }
+
+    @org.springframework.web.bind.annotation.ExceptionHandler(GroupCommitter.OutcomeUnknownException.class)
+    ResponseEntity<?> outcomeUnknown(GroupCommitter.OutcomeUnknownException e) {
+        return ResponseEntity.status(504).body(java.util.Map.of("error", e.getMessage()));
+    }
+
     @org.springframework.web.bind.annotation.ExceptionHandler(org.springframework.web.bind.MethodArgumentNotValidException.class)
     ResponseEntity<?> onValidation(org.springframework.web.bind.MethodArgumentNotValidException e) {
         var errs = e.getBindingResult().getFieldErrors().stream()
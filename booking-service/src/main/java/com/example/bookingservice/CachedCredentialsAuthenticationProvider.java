@@ -0,0 +1,118 @@
+package com.example.bookingservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * HTTP Basic authentication that runs BCrypt once per credential pair instead of once per request.
+ * <p>
+ * A successful check is cached under an HMAC-SHA256 of {@code username:password}, keyed with a
+ * random per-process secret, so neither the password nor a reusable hash of it is held in memory.
+ * Later requests with the same header cost one HMAC plus a user lookup. Entries expire after
+ * {@code ttl}, and an entry is dropped as soon as the user's stored password hash changes or the
+ * account is disabled or locked. Failed attempts are never cached, so they keep paying for BCrypt.
+ */
+@Component
+class CachedCredentialsAuthenticationProvider implements AuthenticationProvider {
+
+    private record Verified(Authentication result, String passwordHash) {
+    }
+
+    private final DaoAuthenticationProvider delegate;
+    private final UserDetailsService users;
+    private final boolean enabled;
+    private final SecretKeySpec key;
+    private final Cache<String, Verified> cache;
+
+    CachedCredentialsAuthenticationProvider(UserDetailsService users,
+            PasswordEncoder encoder,
+            MeterRegistry meterRegistry,
+            @Value("${booking.auth-cache.enabled:true}") boolean enabled,
+            @Value("${booking.auth-cache.ttl:5m}") Duration ttl,
+            @Value("${booking.auth-cache.max-entries:10000}") long maxEntries) {
+        this.delegate = new DaoAuthenticationProvider(encoder);
+        this.delegate.setUserDetailsService(users);
+        this.users = users;
+        this.enabled = enabled;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.credentials");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!enabled || authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        String username = authentication.getName();
+        String cacheKey = hmac(username + ':' + authentication.getCredentials());
+
+        Verified verified = cache.getIfPresent(cacheKey);
+        if (verified != null) {
+            if (stillValid(username, verified.passwordHash())) {
+                return verified.result();
+            }
+            cache.invalidate(cacheKey);
+        }
+
+        Authentication result = delegate.authenticate(authentication); // BCrypt; throws on bad credentials
+        if (result.getPrincipal() instanceof UserDetails user) {
+            cache.put(cacheKey, new Verified(result, user.getPassword()));
+        }
+        return result;
+    }
+
+    /** The user still exists, may log in, and has the same password hash as when the entry was cached. */
+    private boolean stillValid(String username, String passwordHash) {
+        try {
+            UserDetails user = users.loadUserByUsername(username);
+            return passwordHash.equals(user.getPassword())
+                    && user.isEnabled() && user.isAccountNonLocked()
+                    && user.isAccountNonExpired() && user.isCredentialsNonExpired();
+        } catch (UsernameNotFoundException e) {
+            return false;
+        }
+    }
+
+    private String hmac(String credentials) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return Base64.getEncoder().encodeToString(mac.doFinal(credentials.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
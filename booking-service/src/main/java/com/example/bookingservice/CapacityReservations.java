@@ -0,0 +1,201 @@
+package com.example.bookingservice;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Atomic capacity check at booking time ({@code booking.reservation.enabled=true}).
+ * <p>
+ * Each room-night has a counter {@code inventory:{roomId}:<date>} holding the rooms still free.
+ * One Lua script checks every night of the stay and decrements them all only if each has room,
+ * so a reservation costs a single Redis round trip and needs no locks. Missing counters start at
+ * {@code default-capacity} and are marked as a guess ({@code <key>:assumed}); availability-service
+ * fills in missing counters from the stream and corrects guessed ones once.
+ * Nights are {@code startDate..endDate} inclusive, as in availability-service.
+ */
+@Component
+class CapacityReservations {
+
+    /**
+     * KEYS are the night counters followed by their {@code :assumed} marks. Returns 0 on success, else
+     * the 1-based index of the first night without capacity.
+     */
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>("""
+            local cap = tonumber(ARGV[1])
+            local n = tonumber(ARGV[2])
+            local nights = #KEYS / 2
+            for i = 1, nights do
+              local left = redis.call('GET', KEYS[i])
+              if left == false then left = cap else left = tonumber(left) end
+              if left < n then return i end
+            end
+            for i = 1, nights do
+              if redis.call('EXISTS', KEYS[i]) == 0 then
+                redis.call('SET', KEYS[i], cap - n, 'EXAT', ARGV[i + 2])
+                redis.call('SET', KEYS[nights + i], cap, 'EXAT', ARGV[i + 2])
+              else
+                redis.call('DECRBY', KEYS[i], n)
+              end
+            end
+            return 0
+            """, Long.class);
+
+    /** Gives rooms back to counters that still exist (an expired night needs no release). */
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            for i, key in ipairs(KEYS) do
+              if redis.call('EXISTS', key) == 1 then redis.call('INCRBY', key, ARGV[1]) end
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final int defaultCapacity;
+
+    CapacityReservations(StringRedisTemplate redis,
+            @Value("${booking.reservation.enabled:false}") boolean enabled,
+            @Value("${booking.reservation.default-capacity:5}") int defaultCapacity) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.defaultCapacity = defaultCapacity;
+    }
+
+    /** Takes one room on every night of the stay, or throws {@link OverbookedException} and takes none. */
+    void reserve(String roomId, LocalDate start, LocalDate end) {
+        if (!enabled) {
+            return;
+        }
+        Long full = redis.execute(RESERVE, reserveKeys(roomId, start, end), (Object[]) reserveArgs(start, end));
+        if (full != null && full > 0) {
+            throw new OverbookedException(roomId, start.plusDays(full - 1));
+        }
+    }
+
+    /**
+     * {@link #reserve} for many stays in one pipelined round trip. Each stay is still all-or-nothing
+     * and later stays see the rooms taken by earlier ones. If one does not fit, the stays already
+     * reserved are released in a second round trip and none is kept.
+     *
+     * @throws OverbookedException for the first stay that does not fit
+     */
+    void reserveAll(List<BookingRequest> stays) {
+        if (!enabled || stays.isEmpty()) {
+            return;
+        }
+        byte[] script = RESERVE.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        List<Object> results = redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (BookingRequest s : stays) {
+                List<String> keys = reserveKeys(s.roomId(), s.startDate(), s.endDate());
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, keys.size(),
+                        bytes(keys, reserveArgs(s.startDate(), s.endDate())));
+            }
+            return null;
+        });
+        List<BookingRequest> reserved = new ArrayList<>(stays.size());
+        OverbookedException overbooked = null;
+        for (int i = 0; i < stays.size(); i++) {
+            long full = (Long) results.get(i);
+            BookingRequest s = stays.get(i);
+            if (full == 0) {
+                reserved.add(s);
+            } else if (overbooked == null) {
+                overbooked = new OverbookedException(s.roomId(), s.startDate().plusDays(full - 1));
+            }
+        }
+        if (overbooked != null) {
+            releaseAll(reserved);
+            throw overbooked;
+        }
+    }
+
+    /** Undoes {@link #reserve} when the booking could not be stored, or when it is cancelled. */
+    void release(String roomId, LocalDate start, LocalDate end) {
+        if (!enabled) {
+            return;
+        }
+        redis.execute(RELEASE, keys(roomId, start, end), "1");
+    }
+
+    /** {@link #release} for many stays in one pipelined round trip. */
+    void releaseAll(List<BookingRequest> stays) {
+        if (!enabled || stays.isEmpty()) {
+            return;
+        }
+        byte[] script = RELEASE.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (BookingRequest s : stays) {
+                List<String> keys = keys(s.roomId(), s.startDate(), s.endDate());
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, keys.size(), bytes(keys, "1"));
+            }
+            return null;
+        });
+    }
+
+    static String key(String roomId, LocalDate night) {
+        return "inventory:{" + roomId + "}:" + night; // hash tag keeps a room's nights in one slot
+    }
+
+    /** Present while the counter still holds the {@code default-capacity} guess it was created with. */
+    static String assumedKey(String counterKey) {
+        return counterKey + ":assumed";
+    }
+
+    /** The stay's counters followed by their {@code :assumed} marks. */
+    private static List<String> reserveKeys(String roomId, LocalDate start, LocalDate end) {
+        List<String> keys = keys(roomId, start, end);
+        keys.addAll(keys.stream().map(CapacityReservations::assumedKey).toList());
+        return keys;
+    }
+
+    /** Default capacity, rooms to take, then the expiry of each night. */
+    private String[] reserveArgs(LocalDate start, LocalDate end) {
+        List<String> args = new ArrayList<>();
+        args.add(Integer.toString(defaultCapacity));
+        args.add("1");
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            args.add(Long.toString(expiresAt(d)));
+        }
+        return args.toArray(String[]::new);
+    }
+
+    private static byte[][] bytes(List<String> keys, String... args) {
+        byte[][] out = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            out[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            out[keys.size() + i] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static List<String> keys(String roomId, LocalDate start, LocalDate end) {
+        List<String> keys = new ArrayList<>();
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            keys.add(key(roomId, d));
+        }
+        return keys;
+    }
+
+    /** Counters expire the day after the night has passed. */
+    private static long expiresAt(LocalDate night) {
+        return night.plusDays(2).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+}
+
+class OverbookedException extends RuntimeException {
+    OverbookedException(String roomId, LocalDate night) {
+        super("Room " + roomId + " is fully booked on " + night);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit for single-booking POSTs ({@code booking.group-commit.enabled=true}).
+ * <p>
+ * Request threads enqueue their booking and wait. One committer thread takes up to
+ * {@code max-batch} queued bookings, or whatever arrived within {@code window} of the first, and
+ * inserts them with their events in a single transaction, so concurrent requests share one commit
+ * (and one WAL flush). If that transaction fails, each booking of the group is retried in its own
+ * transaction, so one bad request cannot fail its neighbours.
+ * <p>
+ * A request waits at most {@code timeout} for its group to start. If it is still queued then, it is
+ * withdrawn and rejected; once its group is committing it waits up to {@code timeout} more for the
+ * outcome. Requests that cannot be queued (full, stopping) or are withdrawn get
+ * {@link RejectedExecutionException} (503); nothing is ever stored for them.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.group-commit.enabled", havingValue = "true")
+class GroupCommitter implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+
+    /** {@code taken} is set by whoever decides first: the committer (it will be stored) or the waiter (it will not). */
+    private record Pending(BookingRequest request, String traceparent, CompletableFuture<Booking> future,
+            AtomicBoolean taken) {
+    }
+
+    /** The booking's group was committing but had not finished within the timeout; it may or may not be stored. */
+    static class OutcomeUnknownException extends RuntimeException {
+        OutcomeUnknownException(String message) {
+            super(message);
+        }
+    }
+
+    private final BookingRepository repository;
+    private final BookingEventPublisher eventPublisher;
+    private final BookingEventEncoding eventEncoding;
+    private final TransactionTemplate tx;
+    private final MicroBatcher<Pending> batcher;
+    private final long timeoutNanos;
+    private final DistributionSummary groupSize;
+
+    GroupCommitter(BookingRepository repository,
+            BookingEventPublisher eventPublisher,
+            BookingEventEncoding eventEncoding,
+            TransactionTemplate tx,
+            MeterRegistry registry,
+            @Value("${booking.group-commit.queue-capacity:10000}") int capacity,
+            @Value("${booking.group-commit.max-batch:64}") int maxBatch,
+            @Value("${booking.group-commit.window:2ms}") Duration window,
+            @Value("${booking.group-commit.timeout:5s}") Duration timeout) {
+        this.repository = repository;
+        this.eventPublisher = eventPublisher;
+        this.eventEncoding = eventEncoding;
+        this.tx = tx;
+        this.batcher = new MicroBatcher<>("booking-group-committer", capacity, maxBatch, window,
+                this::commitGroup, GroupCommitter::reject);
+        this.timeoutNanos = timeout.toNanos();
+        this.groupSize = DistributionSummary.builder("booking.group-commit.size")
+                .description("Bookings committed per transaction")
+                .register(registry);
+    }
+
+    /** Stores the booking and publishes its event; blocks until the group holding it has committed. */
+    Booking commit(BookingRequest request) {
+        var pending = new Pending(request, TraceParent.fromCurrentRequest(), new CompletableFuture<>(), new AtomicBoolean());
+        if (!batcher.offer(pending)) {
+            throw new RejectedExecutionException("Group commit queue is full or stopped");
+        }
+        try {
+            try {
+                return pending.future().get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException queued) {
+                if (pending.taken().compareAndSet(false, true)) {
+                    throw new RejectedExecutionException("Timed out waiting for a group commit");
+                }
+                return pending.future().get(timeoutNanos, TimeUnit.NANOSECONDS); // its group is committing
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new OutcomeUnknownException("Group commit did not finish in time; the booking may have been stored");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.taken().compareAndSet(false, true)) {
+                throw new RejectedExecutionException("Interrupted while waiting for a group commit");
+            }
+            throw new OutcomeUnknownException("Interrupted while the booking's group was committing");
+        }
+    }
+
+    /** Fails a booking that was queued but will not be committed (stopping, or the committer died). */
+    private static void reject(Pending p) {
+        if (p.taken().compareAndSet(false, true)) {
+            p.future().completeExceptionally(new RejectedExecutionException("Group commit stopped"));
+        }
+    }
+
+    private void commitGroup(List<Pending> claimed) {
+        // requests that gave up waiting are left out; the rest can no longer give up
+        List<Pending> group = claimed.stream().filter(p -> p.taken().compareAndSet(false, true)).toList();
+        if (group.isEmpty()) {
+            return;
+        }
+        groupSize.record(group.size());
+        try {
+            List<Booking> bookings = tx.execute(status -> persist(group));
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).future().complete(bookings.get(i));
+            }
+        } catch (Exception e) {
+            if (group.size() == 1) {
+                group.get(0).future().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} bookings failed, retrying individually: {}", group.size(), e.toString());
+            for (Pending p : group) {
+                try {
+                    p.future().complete(tx.execute(status -> persist(List.of(p)).get(0)));
+                } catch (Exception single) {
+                    p.future().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private List<Booking> persist(List<Pending> group) {
+        List<Booking> bookings = repository.saveAll(group.stream()
+                .map(p -> new Booking(null, p.request().roomId(), p.request().startDate(), p.request().endDate(), "CREATED"))
+                .toList());
+        List<Map<String, String>> events = new ArrayList<>(bookings.size());
+        for (int i = 0; i < bookings.size(); i++) {
+            events.add(eventEncoding.fields(bookings.get(i), "BOOKING_CREATED", group.get(i).traceparent()));
+        }
+        eventPublisher.publishAll(events);
+        return bookings;
+    }
+
+    @Override
+    public void start() {
+        batcher.start();
+    }
+
+    /** Stops accepting bookings, commits whatever is already queued (up to 10s), then rejects the rest. */
+    @Override
+    public void stop() {
+        batcher.stop(Duration.ofSeconds(10));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return batcher.isRunning();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.bookingservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue drained by one worker thread in groups: the worker takes the first waiting item,
+ * then whatever else arrives within {@code window} of it, up to {@code maxBatch}, and hands the
+ * group to {@code handler}. Shared by {@link GroupCommitter} and {@link BatchingStreamPublisher}.
+ * <p>
+ * Nothing is silently dropped: once {@link #stop} has been called no item is accepted, the worker
+ * hands over what is already queued, and anything it could not (it was interrupted, or did not
+ * finish in time) goes to {@code abandon}, as does a group whose handler threw.
+ */
+final class MicroBatcher<T> {
+    private static final Logger log = LoggerFactory.getLogger(MicroBatcher.class);
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int maxBatch;
+    private final long windowNanos;
+    private final Consumer<List<T>> handler;
+    private final Consumer<T> abandon;
+
+    private volatile boolean running;
+    private volatile boolean abandoned;
+    private Thread worker;
+
+    MicroBatcher(String name, int capacity, int maxBatch, Duration window,
+            Consumer<List<T>> handler, Consumer<T> abandon) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.windowNanos = window.toNanos();
+        this.handler = handler;
+        this.abandon = abandon;
+    }
+
+    /** Queues {@code item} if there is room; false when full or stopped. */
+    boolean offer(T item) {
+        return running && queue.offer(item) && acceptedWhileRunning(item);
+    }
+
+    /** Queues {@code item}, waiting up to {@code timeout} for room; false when stopped or still full. */
+    boolean put(T item, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (running) {
+            long remaining = deadline - System.nanoTime();
+            if (queue.offer(item, Math.max(0, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100))), TimeUnit.NANOSECONDS)) {
+                return acceptedWhileRunning(item);
+            }
+            if (remaining <= 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Takes {@code item} back if a concurrent {@link #stop} may already have drained the queue. */
+    private boolean acceptedWhileRunning(T item) {
+        return running || !queue.remove(item);
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void start() {
+        abandoned = false;
+        running = true;
+        worker = new Thread(this::loop, name);
+        worker.start();
+    }
+
+    /** Stops accepting items, lets the worker drain the queue for up to {@code timeout}, then abandons the rest. */
+    void stop(Duration timeout) {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(timeout.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                log.warn("{} did not drain within {}; failing what is still queued", name, timeout);
+                abandoned = true; // in case the handler swallows the interrupt
+                worker.interrupt();
+            }
+        }
+        abandonQueued();
+    }
+
+    private void loop() {
+        List<T> group = new ArrayList<>(maxBatch);
+        try {
+            while (!abandoned && (running || !queue.isEmpty())) {
+                T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    T next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                try {
+                    handler.accept(group);
+                } catch (RuntimeException e) {
+                    log.error("{} failed to handle a group of {}", name, group.size(), e);
+                    group.forEach(abandon);
+                }
+                group = new ArrayList<>(maxBatch); // the handler may keep the one it was given
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false; // no worker left to hand anything to
+            group.forEach(abandon); // taken from the queue but never handed over
+            abandonQueued();
+        }
+    }
+
+    private void abandonQueued() {
+        List<T> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(abandon);
+    }
+}
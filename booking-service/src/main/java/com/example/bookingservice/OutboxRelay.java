@@ -0,0 +1,175 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// region Domain
+@Entity
+@Table(name = "outbox_event")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String streamKey;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false, columnDefinition = "jsonb")
+    private Map<String, String> payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant sentAt; // null until relayed
+}
+// endregion
+
+// region Repository
+interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /** Oldest unsent rows, locked so concurrent relays (other instances) skip them. */
+    @Query(value = """
+            SELECT * FROM booking.outbox_event
+            WHERE sent_at IS NULL
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockUnsent(@Param("limit") int limit);
+
+    @Modifying
+    @Query("update OutboxEvent o set o.sentAt = :sentAt where o.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+
+    @Modifying
+    @Query("delete from OutboxEvent o where o.sentAt < :before")
+    int deleteSentBefore(@Param("before") Instant before);
+
+    long countBySentAtIsNull();
+}
+// endregion
+
+// region Relay
+/**
+ * Drains {@code outbox_event} to Redis: each cycle locks up to {@code batch-size} unsent rows,
+ * XADDs them in one pipelined round trip and marks them sent in the same transaction, repeating
+ * until the outbox is empty. Delivery is at-least-once: a crash between XADD and commit re-sends the
+ * batch under new stream IDs. availability-service therefore also deduplicates on
+ * {@code (bookingId, eventType)}; any other consumer of the stream has to do the same.
+ */
+@Component
+@ConditionalOnExpression("'${booking.events.publish-mode:outbox}' matches 'outbox|async'") // async spills here
+class OutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxRepository outbox;
+    private final PipelinedStreamWriter writer;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Duration retention;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final Timer relayTimer;
+    private final Timer eventLag;
+    private final Counter published;
+
+    OutboxRelay(OutboxRepository outbox,
+            PipelinedStreamWriter writer,
+            TransactionTemplate tx,
+            MeterRegistry registry,
+            @Value("${booking.outbox.batch-size:500}") int batchSize,
+            @Value("${booking.outbox.retention:PT1H}") Duration retention) {
+        this.outbox = outbox;
+        this.writer = writer;
+        this.tx = tx;
+        this.batchSize = batchSize;
+        this.retention = retention;
+
+        Gauge.builder("booking.outbox.depth", depth, AtomicLong::get)
+                .description("Unsent outbox rows")
+                .register(registry);
+        this.relayTimer = Timer.builder("booking.outbox.relay")
+                .description("Time to XADD and mark one outbox batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.eventLag = Timer.builder("booking.outbox.lag")
+                .description("Time from outbox insert to stream publish")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.published = Counter.builder("booking.outbox.published").register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${booking.outbox.poll-interval:PT0.05S}")
+    public void drain() {
+        try {
+            int relayed;
+            do {
+                relayed = tx.execute(status -> relayBatch());
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.warn("Outbox relay failed, will retry: {}", e.toString());
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = outbox.lockUnsent(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        relayTimer.record(() -> {
+            // all rows target booking-events today; group by key if that ever changes
+            writer.addAll(batch.get(0).getStreamKey(), batch.stream().map(OutboxEvent::getPayload).toList());
+            outbox.markSent(batch.stream().map(OutboxEvent::getId).toList(), Instant.now());
+        });
+        Instant now = Instant.now();
+        batch.forEach(e -> eventLag.record(Duration.between(e.getCreatedAt(), now)));
+        published.increment(batch.size());
+        log.debug("Relayed {} outbox events", batch.size());
+        return batch.size();
+    }
+
+    @Scheduled(fixedDelayString = "${booking.outbox.depth-interval:PT5S}")
+    public void refreshDepth() {
+        depth.set(outbox.countBySentAtIsNull());
+    }
+
+    @Scheduled(fixedDelayString = "${booking.outbox.purge-interval:PT5M}")
+    public void purgeSent() {
+        Integer purged = tx.execute(status -> outbox.deleteSentBefore(Instant.now().minus(retention)));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} relayed outbox events", purged);
+        }
+    }
+}
+// endregion
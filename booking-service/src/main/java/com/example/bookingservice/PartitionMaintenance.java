@@ -0,0 +1,181 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lifecycle of the monthly range partitions of {@code booking.booking} on {@code start_date} (set up
+ * by V5). At startup and every {@code interval}:
+ * <ul>
+ *   <li>the current month and the next {@code months-ahead} get a partition {@code booking_pYYYY_MM}. Rows
+ *   that already landed in {@code booking_default} for that month are moved into it in
+ *   the same transaction, so creating a partition late is safe;</li>
+ *   <li>with {@code retain-months} set (off by default: bookings are records, not a projection),
+ *   partitions older than that many full months are detached and moved to the
+ *   {@code archive-schema} (left in place when blank). Archived tables are never dropped here.</li>
+ * </ul>
+ * Instances serialize on an advisory lock per table, so several replicas can run this at once.
+ * Meters: {@code booking.partitions.created}, {@code booking.partitions.detached} and
+ * {@code booking.partitions.default-rows} (rows outside every month partition).
+ */
+@Component
+@ConditionalOnProperty(name = "booking.partitions.enabled", havingValue = "true", matchIfMissing = true)
+class PartitionMaintenance {
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+    static final String SCHEMA = "booking";
+    static final String TABLE = "booking";
+    static final String COLUMN = "start_date";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy_MM");
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int monthsAhead;
+    private final int retainMonths;
+    private final String archiveSchema;
+    private final Counter created;
+    private final Counter detached;
+    private final AtomicLong defaultRows = new AtomicLong(-1);
+
+    PartitionMaintenance(DataSource dataSource,
+            TransactionTemplate tx,
+            MeterRegistry registry,
+            @Value("${booking.partitions.months-ahead:13}") int monthsAhead,
+            @Value("${booking.partitions.retain-months:0}") int retainMonths,
+            @Value("${booking.partitions.archive-schema:booking_archive}") String archiveSchema) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = tx;
+        this.monthsAhead = monthsAhead;
+        this.retainMonths = retainMonths;
+        this.archiveSchema = archiveSchema.isBlank() ? null : archiveSchema;
+        this.created = Counter.builder("booking.partitions.created")
+                .description("Monthly booking partitions created")
+                .register(registry);
+        this.detached = Counter.builder("booking.partitions.detached")
+                .description("Monthly booking partitions detached past the retention window")
+                .register(registry);
+        Gauge.builder("booking.partitions.default-rows", defaultRows,
+                        v -> v.get() < 0 ? Double.NaN : v.get())
+                .description("Rows in booking_default, outside every month partition")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${booking.partitions.interval:PT6H}")
+    public void maintain() {
+        try {
+            YearMonth current = YearMonth.now();
+            Map<YearMonth, String> attached = partitions();
+            for (YearMonth month : monthsToCreate(current, monthsAhead)) {
+                if (!attached.containsKey(month)) {
+                    create(month);
+                }
+            }
+            for (var p : attached.entrySet()) {
+                if (expired(p.getKey(), current, retainMonths)) {
+                    detach(p.getValue());
+                }
+            }
+            defaultRows.set(jdbc.queryForObject(
+                    "SELECT count(*) FROM " + SCHEMA + "." + TABLE + "_default", Long.class));
+        } catch (Exception e) {
+            log.warn("Partition maintenance failed: {}", e.toString());
+        }
+    }
+
+    /** The current month and the {@code ahead} months after it. */
+    static List<YearMonth> monthsToCreate(YearMonth current, int ahead) {
+        List<YearMonth> months = new ArrayList<>(ahead + 1);
+        for (int i = 0; i <= ahead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        return months;
+    }
+
+    /** Whether {@code month} is older than the {@code retain} full months before {@code current}; never when {@code retain <= 0}. */
+    static boolean expired(YearMonth month, YearMonth current, int retain) {
+        return retain > 0 && month.isBefore(current.minusMonths(retain));
+    }
+
+    /** Attached month partitions by month, oldest first (the default partition is not included). */
+    private Map<YearMonth, String> partitions() {
+        Map<YearMonth, String> months = new TreeMap<>();
+        jdbc.query("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = CAST(? AS regclass)
+                """, rs -> {
+            String name = rs.getString(1);
+            if (name.length() == TABLE.length() + 9) { // booking_pYYYY_MM
+                try {
+                    months.put(YearMonth.parse(name.substring(TABLE.length()), SUFFIX), name);
+                } catch (DateTimeParseException ignored) {
+                    // not one of ours
+                }
+            }
+        }, SCHEMA + "." + TABLE);
+        return months;
+    }
+
+    private void create(YearMonth month) {
+        String name = TABLE + month.format(SUFFIX);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        tx.executeWithoutResult(status -> {
+            lock();
+            if (Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, SCHEMA + "." + name))) {
+                return; // another instance was first
+            }
+            jdbc.execute("CREATE TABLE %s.%s (LIKE %s.%s INCLUDING DEFAULTS INCLUDING CONSTRAINTS)"
+                    .formatted(SCHEMA, name, SCHEMA, TABLE));
+            int moved = jdbc.update("""
+                    WITH moved AS (DELETE FROM %s.%s_default WHERE %s >= ? AND %s < ? RETURNING *)
+                    INSERT INTO %s.%s SELECT * FROM moved
+                    """.formatted(SCHEMA, TABLE, COLUMN, COLUMN, SCHEMA, name), Date.valueOf(from), Date.valueOf(to));
+            jdbc.execute("ALTER TABLE %s.%s ATTACH PARTITION %s.%s FOR VALUES FROM ('%s') TO ('%s')"
+                    .formatted(SCHEMA, TABLE, SCHEMA, name, from, to));
+            created.increment();
+            log.info("Created partition {}.{} ({} rows moved from the default partition)", SCHEMA, name, moved);
+        });
+    }
+
+    private void detach(String name) {
+        tx.executeWithoutResult(status -> {
+            lock();
+            if (!Boolean.TRUE.equals(jdbc.queryForObject("""
+                    SELECT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass(?) AND inhparent = CAST(? AS regclass))
+                    """, Boolean.class, SCHEMA + "." + name, SCHEMA + "." + TABLE))) {
+                return; // another instance was first
+            }
+            jdbc.execute("ALTER TABLE %s.%s DETACH PARTITION %s.%s".formatted(SCHEMA, TABLE, SCHEMA, name));
+            if (archiveSchema != null) {
+                jdbc.execute("CREATE SCHEMA IF NOT EXISTS " + archiveSchema);
+                jdbc.execute("ALTER TABLE %s.%s SET SCHEMA %s".formatted(SCHEMA, name, archiveSchema));
+            }
+            detached.increment();
+            log.info("Detached partition {}.{}{}", SCHEMA, name, archiveSchema != null ? " to " + archiveSchema : "");
+        });
+    }
+
+    private void lock() {
+        jdbc.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> { }, "partitions:" + SCHEMA + "." + TABLE);
+    }
+}
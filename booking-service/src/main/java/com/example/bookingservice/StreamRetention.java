@@ -0,0 +1,194 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps {@code booking-events} from growing without bound.
+ * <p>
+ * Every {@code interval}, the oldest entry any consumer group still needs is found from
+ * {@code XINFO GROUPS} and {@code XPENDING}: a group's oldest pending (delivered, un-acknowledged)
+ * entry, or its last-delivered ID when nothing is pending. Entries older than that floor minus
+ * {@code margin} are removed with {@code XTRIM MINID} ({@code ~} by default, so Redis only drops
+ * whole macro nodes). Nothing is trimmed while the stream has no group, and a group that stops
+ * acknowledging holds the floor where it is ({@code booking.stream.retention.floor-age} grows).
+ * <p>
+ * A pending entry older than {@code max-pending-age} no longer holds the floor: the consumer's
+ * reclaimer should have retried or dead-lettered it long before, so it is treated as poison, logged,
+ * counted in {@code booking.stream.retention.stale-pending}, and trimmed with everything else below
+ * the floor. {@code 0} keeps every pending entry.
+ * <p>
+ * Meters: {@code booking.stream.length} (XLEN), {@code booking.stream.memory} ({@code MEMORY USAGE},
+ * bytes), {@code booking.stream.retention.floor-age} (seconds), {@code booking.stream.trimmed} and
+ * {@code booking.stream.retention.stale-pending} (groups skipped past, per run).
+ */
+@Component
+@ConditionalOnProperty(name = "booking.stream.retention.enabled", havingValue = "true", matchIfMissing = true)
+class StreamRetention {
+    private static final Logger log = LoggerFactory.getLogger(StreamRetention.class);
+
+    private final StringRedisTemplate redis;
+    private final byte[] key = BookingEventPublisher.STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+    private final long marginMillis;
+    private final boolean approximate;
+    private final Duration maxPendingAge;
+    private final Counter trimmed;
+    private final Counter stalePending;
+    private final AtomicLong length = new AtomicLong(-1);
+    private final AtomicLong memoryBytes = new AtomicLong(-1);
+    private final AtomicLong floorMillis = new AtomicLong(-1);
+
+    StreamRetention(StringRedisTemplate redis,
+            MeterRegistry registry,
+            @Value("${booking.stream.retention.margin:PT10M}") Duration margin,
+            @Value("${booking.stream.retention.approximate:true}") boolean approximate,
+            @Value("${booking.stream.retention.max-pending-age:PT24H}") Duration maxPendingAge) {
+        this.redis = redis;
+        this.marginMillis = margin.toMillis();
+        this.approximate = approximate;
+        this.maxPendingAge = maxPendingAge;
+        this.trimmed = Counter.builder("booking.stream.trimmed")
+                .description("Entries removed from booking-events by XTRIM MINID")
+                .register(registry);
+        this.stalePending = Counter.builder("booking.stream.retention.stale-pending")
+                .description("Groups whose pending entries older than max-pending-age were left to trimming")
+                .register(registry);
+        Gauge.builder("booking.stream.length", length, StreamRetention::unknownAsNaN)
+                .description("Entries in booking-events")
+                .register(registry);
+        Gauge.builder("booking.stream.memory", memoryBytes, StreamRetention::unknownAsNaN)
+                .description("Redis memory used by booking-events (MEMORY USAGE)")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("booking.stream.retention.floor-age", floorMillis,
+                        f -> f.get() < 0 ? Double.NaN : Math.max(0, System.currentTimeMillis() - f.get()) / 1000.0)
+                .description("Age of the oldest entry a consumer group still needs")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${booking.stream.retention.interval:PT1M}",
+            initialDelayString = "${booking.stream.retention.interval:PT1M}")
+    public void trim() {
+        try {
+            String floor = oldestNeeded();
+            if (floor != null) {
+                floorMillis.set(millis(floor));
+                String minId = minId(floor, marginMillis);
+                Long removed = xtrimMinId(minId);
+                if (removed != null && removed > 0) {
+                    trimmed.increment(removed);
+                    log.info("Trimmed {} entries from {} below {}", removed, BookingEventPublisher.STREAM_KEY, minId);
+                }
+            }
+            readSize();
+        } catch (Exception e) {
+            log.warn("Stream retention run failed: {}", e.toString());
+        }
+    }
+
+    /** Smallest ID still needed by some group, or {@code null} if there is no group (or no stream). */
+    private String oldestNeeded() {
+        StreamInfo.XInfoGroups groups = redis.execute((RedisCallback<StreamInfo.XInfoGroups>) (RedisConnection c) ->
+                c.streamCommands().xInfoGroups(key));
+        if (groups == null || groups.isEmpty()) {
+            return null;
+        }
+        String cutoff = maxPendingAge.isZero() ? null : (System.currentTimeMillis() - maxPendingAge.toMillis()) + "-0";
+        String floor = null;
+        for (StreamInfo.XInfoGroup group : groups.stream().toList()) {
+            String oldestPending = null;
+            if (group.pendingCount() > 0) {
+                PendingMessagesSummary pending = redis.opsForStream()
+                        .pending(BookingEventPublisher.STREAM_KEY, group.groupName());
+                oldestPending = pending == null ? null : pending.minMessageId();
+                if (oldestPending != null && cutoff != null && compare(oldestPending, cutoff) < 0) {
+                    log.warn("Group {} has entries pending since {} (older than {}); trimming past them",
+                            group.groupName(), oldestPending, maxPendingAge);
+                    stalePending.increment();
+                    oldestPending = oldestPendingSince(group.groupName(), cutoff);
+                }
+            }
+            floor = min(floor, groupFloor(group.lastDeliveredId(), oldestPending));
+        }
+        return floor;
+    }
+
+    /** The group's oldest pending entry at or after {@code cutoff}, if any. */
+    private String oldestPendingSince(String group, String cutoff) {
+        PendingMessages recent = redis.opsForStream().pending(BookingEventPublisher.STREAM_KEY, group,
+                Range.rightUnbounded(Range.Bound.inclusive(cutoff)), 1);
+        return recent == null || recent.isEmpty() ? null : recent.get(0).getIdAsString();
+    }
+
+    /** What one group still needs: its oldest pending entry, or its last-delivered ID when nothing (recent) is pending. */
+    static String groupFloor(String lastDeliveredId, String oldestPendingId) {
+        return oldestPendingId == null ? lastDeliveredId : min(oldestPendingId, lastDeliveredId);
+    }
+
+    /** The ID to pass to {@code XTRIM MINID}: {@code floor} moved back by {@code marginMillis}. */
+    static String minId(String floor, long marginMillis) {
+        return marginMillis == 0 ? floor : Math.max(0, millis(floor) - marginMillis) + "-0";
+    }
+
+    static String min(String a, String b) {
+        return a == null || (b != null && compare(b, a) < 0) ? b : a;
+    }
+
+    private Long xtrimMinId(String minId) {
+        return redis.execute((RedisCallback<Long>) (RedisConnection c) -> approximate
+                ? (Long) c.execute("XTRIM", key, bytes("MINID"), bytes("~"), bytes(minId))
+                : (Long) c.execute("XTRIM", key, bytes("MINID"), bytes(minId)));
+    }
+
+    private void readSize() {
+        Long len = redis.opsForStream().size(BookingEventPublisher.STREAM_KEY);
+        length.set(len == null ? -1 : len);
+        Object usage = redis.execute((RedisCallback<Object>) (RedisConnection c) ->
+                c.execute("MEMORY", bytes("USAGE"), key));
+        memoryBytes.set(usage instanceof Number n ? n.longValue() : -1);
+    }
+
+    /** Stream IDs are {@code <millis>-<seq>}; compared numerically. */
+    static int compare(String a, String b) {
+        int c = Long.compare(millis(a), millis(b));
+        return c != 0 ? c : Long.compare(seq(a), seq(b));
+    }
+
+    static long millis(String id) {
+        int dash = id.indexOf('-');
+        return Long.parseLong(dash < 0 ? id : id.substring(0, dash));
+    }
+
+    private static long seq(String id) {
+        int dash = id.indexOf('-');
+        return dash < 0 ? 0 : Long.parseLong(id.substring(dash + 1));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double unknownAsNaN(AtomicLong value) {
+        long v = value.get();
+        return v < 0 ? Double.NaN : v;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bookingservice;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * W3C {@code traceparent} values for booking events. The trace of the incoming request is continued
+ * when it sent a valid {@code traceparent} header; otherwise a new trace is started.
+ */
+final class TraceParent {
+    static final String HEADER = "traceparent";
+    private static final Pattern VALID = Pattern.compile("00-([0-9a-f]{32})-[0-9a-f]{16}-([0-9a-f]{2})");
+
+    private TraceParent() {
+    }
+
+    /** A child of the current request's trace context, or a new sampled root. */
+    static String fromCurrentRequest() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs) {
+            String incoming = attrs.getRequest().getHeader(HEADER);
+            var m = incoming == null ? null : VALID.matcher(incoming);
+            if (m != null && m.matches()) {
+                return "00-" + m.group(1) + "-" + randomHex(8) + "-" + m.group(2);
+            }
+        }
+        return "00-" + randomHex(16) + "-" + randomHex(8) + "-01";
+    }
+
+    private static String randomHex(int bytes) {
+        byte[] b = new byte[bytes];
+        ThreadLocalRandom.current().nextBytes(b);
+        return HexFormat.of().formatHex(b);
+    }
+}
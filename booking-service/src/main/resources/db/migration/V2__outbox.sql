@@ -0,0 +1,15 @@
+-- Transactional outbox: booking events are written in the same transaction as the booking
+-- and relayed to the Redis stream in batches by OutboxRelay.
+CREATE SEQUENCE IF NOT EXISTS booking.outbox_event_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS booking.outbox_event (
+  id BIGINT PRIMARY KEY,
+  stream_key VARCHAR(128) NOT NULL,
+  payload JSONB NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  sent_at TIMESTAMPTZ
+);
+
+-- Relay scans only unsent rows, oldest first
+CREATE INDEX IF NOT EXISTS idx_outbox_unsent
+  ON booking.outbox_event (id) WHERE sent_at IS NULL;
@@ -0,0 +1,6 @@
+-- Keyset pagination of a room's bookings walks (room_id, start_date, id) in order
+CREATE INDEX IF NOT EXISTS idx_booking_room_start_id
+  ON booking.booking (room_id, start_date, id);
+
+-- Leading column of the new index covers every lookup the old one served
+DROP INDEX IF EXISTS booking.idx_booking_room;
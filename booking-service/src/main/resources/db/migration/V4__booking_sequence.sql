@@ -0,0 +1,8 @@
+-- Pooled sequence ids for bookings (Hibernate allocates 50 at a time), which lets inserts be batched.
+-- Hibernate treats each value as the top of a block of 50, so start one block above the current max id.
+CREATE SEQUENCE IF NOT EXISTS booking.booking_seq INCREMENT BY 50;
+SELECT setval('booking.booking_seq', COALESCE((SELECT MAX(id) FROM booking.booking), 0) + 50, false);
+
+-- Ids now come from booking_seq only; the BIGSERIAL default would hand out colliding values
+ALTER TABLE booking.booking ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS booking.booking_id_seq;
@@ -0,0 +1,48 @@
+-- Monthly range partitions of booking on start_date, kept up by PartitionMaintenance (future months
+-- created ahead; old months detached only when booking.partitions.retain-months is set). The primary
+-- key must contain the partition column, so it becomes (id, start_date); ids still come from booking_seq.
+
+ALTER TABLE booking.booking RENAME TO booking_unpartitioned;
+ALTER TABLE booking.booking_unpartitioned RENAME CONSTRAINT booking_pkey TO booking_unpartitioned_pkey;
+ALTER INDEX booking.idx_booking_room_start_id RENAME TO idx_booking_room_start_id_unpartitioned;
+
+CREATE TABLE booking.booking (
+  id BIGINT NOT NULL,
+  room_id VARCHAR(128) NOT NULL,
+  start_date DATE NOT NULL,
+  end_date DATE NOT NULL,
+  status VARCHAR(32) NOT NULL,
+  CONSTRAINT booking_pkey PRIMARY KEY (id, start_date)
+) PARTITION BY RANGE (start_date);
+
+-- Keyset pagination of a room's bookings, now per partition
+CREATE INDEX idx_booking_room_start_id ON booking.booking (room_id, start_date, id);
+
+-- Stays starting outside every month partition
+CREATE TABLE booking.booking_default PARTITION OF booking.booking DEFAULT;
+
+-- Months covering the existing rows (at most two years back and three ahead) and the next year
+DO $$
+DECLARE
+  first_month date;
+  last_month date;
+  m date;
+BEGIN
+  SELECT date_trunc('month', GREATEST(LEAST(COALESCE(min(start_date), current_date), current_date),
+                                      current_date - INTERVAL '24 months'))::date,
+         date_trunc('month', LEAST(GREATEST(COALESCE(max(start_date), current_date), current_date + INTERVAL '12 months'),
+                                   current_date + INTERVAL '36 months'))::date
+    INTO first_month, last_month
+    FROM booking.booking_unpartitioned;
+
+  FOR m IN SELECT CAST(g AS date) FROM generate_series(first_month, last_month, INTERVAL '1 month') AS g LOOP
+    EXECUTE format('CREATE TABLE booking.%I PARTITION OF booking.booking FOR VALUES FROM (%L) TO (%L)',
+                   'booking_p' || to_char(m, 'YYYY_MM'), m, CAST(m + INTERVAL '1 month' AS date));
+  END LOOP;
+END $$;
+
+INSERT INTO booking.booking (id, room_id, start_date, end_date, status)
+SELECT id, room_id, start_date, end_date, status
+FROM booking.booking_unpartitioned;
+
+DROP TABLE booking.booking_unpartitioned;
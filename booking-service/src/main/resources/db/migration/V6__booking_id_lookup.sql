@@ -0,0 +1,28 @@
+-- Since V5 the primary key of booking is (id, start_date), so the database no longer stops two rows
+-- sharing an id, and a lookup by id alone probes every month partition. booking_id is a plain table
+-- keyed on id alone, filled by an insert trigger: it makes ids unique again across partitions and
+-- maps an id to its start_date, so lookups by id (cancel) read one partition.
+--
+-- Trade-off: every booking insert also writes one booking_id row (a second, unpartitioned index that
+-- keeps growing, and is not archived with detached partitions), paid on the write path to keep reads
+-- by id pruned. start_date never changes after insert, and bookings are not deleted: moving rows out
+-- of booking_default only re-inserts them into a table that is not yet attached, so the mapping stays
+-- valid. Rows of archived partitions keep their entry, so their ids are never reused.
+
+CREATE TABLE booking.booking_id (
+  id BIGINT PRIMARY KEY,
+  start_date DATE NOT NULL
+);
+
+INSERT INTO booking.booking_id (id, start_date)
+SELECT id, start_date FROM booking.booking;
+
+CREATE FUNCTION booking.booking_id_insert() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+  INSERT INTO booking.booking_id (id, start_date) VALUES (NEW.id, NEW.start_date);
+  RETURN NULL;
+END $$;
+
+-- Defined on the partitioned table, so every current and future partition gets it
+CREATE TRIGGER booking_id_insert AFTER INSERT ON booking.booking
+  FOR EACH ROW EXECUTE FUNCTION booking.booking_id_insert();
@@ -0,0 +1,203 @@
+package com.example.bookingservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BatchingStreamPublisherTest {
+
+    private final PipelinedStreamWriter writer = mock(PipelinedStreamWriter.class);
+    private final OutboxRepository outbox = mock(OutboxRepository.class);
+    private final RecordingTransactionManager txManager = new RecordingTransactionManager();
+
+    private BatchingStreamPublisher publisher(BatchingStreamPublisher.OverflowPolicy overflow) {
+        return publisher(overflow, 16);
+    }
+
+    private BatchingStreamPublisher publisher(BatchingStreamPublisher.OverflowPolicy overflow, int capacity) {
+        return new BatchingStreamPublisher(writer, outbox, txManager, new SimpleMeterRegistry(),
+                capacity, 1, Duration.ZERO, overflow, Duration.ofMillis(50));
+    }
+
+    /** Starts {@code publisher} with its flusher stuck in a flush and its queue (capacity 1) full. */
+    private CountDownLatch jam(BatchingStreamPublisher publisher) throws Exception {
+        var inFlush = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(writer.addAll(eq(BookingEventPublisher.STREAM_KEY), anyList())).thenAnswer(inv -> {
+            inFlush.countDown();
+            release.await();
+            return List.of(RecordId.of("1-0"));
+        });
+        publisher.start();
+        publisher.submit(Map.of("bookingId", "1"));
+        assertThat(inFlush.await(5, TimeUnit.SECONDS)).isTrue();
+        publisher.submit(Map.of("bookingId", "2"));
+        return release;
+    }
+
+    @Test
+    void spillFromAfterCommit_isCommittedInATransactionOfItsOwn() throws Exception {
+        when(outbox.saveAll(anyList())).thenAnswer(inv -> {
+            txManager.write(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        var publisher = publisher(BatchingStreamPublisher.OverflowPolicy.SPILL, 1);
+        var release = jam(publisher);
+
+        new TransactionTemplate(txManager).executeWithoutResult(status ->
+                new AsyncBookingEventPublisher(publisher).publish(Map.of("bookingId", "3")));
+
+        assertThat(txManager.committed).singleElement()
+                .satisfies(rows -> assertThat((List<?>) rows).singleElement()
+                        .satisfies(row -> assertThat(((OutboxEvent) row).getPayload()).containsEntry("bookingId", "3")));
+        release.countDown();
+        publisher.stop(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void block_givesUpAfterBlockTimeout() throws Exception {
+        var publisher = publisher(BatchingStreamPublisher.OverflowPolicy.BLOCK, 1);
+        var release = jam(publisher);
+
+        long started = System.nanoTime();
+        var future = publisher.submit(Map.of("bookingId", "3"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(future).failsWithin(Duration.ZERO)
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(RejectedExecutionException.class)
+                .withMessageContaining("still full");
+        release.countDown();
+        publisher.stop(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void rejectsSubmitsOnceStopped_underEveryPolicy() {
+        for (var policy : BatchingStreamPublisher.OverflowPolicy.values()) {
+            var publisher = publisher(policy);
+            publisher.start();
+            publisher.stop();
+
+            CompletableFuture<RecordId> future = publisher.submit(Map.of("bookingId", "1"));
+
+            assertThat(future).failsWithin(Duration.ZERO)
+                    .withThrowableOfType(Exception.class)
+                    .withCauseInstanceOf(RejectedExecutionException.class);
+        }
+        verifyNoInteractions(writer, outbox);
+    }
+
+    @Test
+    void failsQueuedEvents_whenTheFlusherIsInterrupted() throws Exception {
+        var inFlush = new CountDownLatch(1);
+        when(writer.addAll(eq(BookingEventPublisher.STREAM_KEY), anyList())).thenAnswer(inv -> {
+            inFlush.countDown();
+            Thread.sleep(10_000);
+            return List.of(RecordId.of("1-0"));
+        });
+        var publisher = publisher(BatchingStreamPublisher.OverflowPolicy.BLOCK);
+        publisher.start();
+        var inFlight = publisher.submit(Map.of("bookingId", "1"));
+        assertThat(inFlush.await(5, TimeUnit.SECONDS)).isTrue();
+        var queued = publisher.submit(Map.of("bookingId", "2"));
+
+        publisher.stop(Duration.ofMillis(50)); // the flusher is interrupted mid-flush
+
+        assertThat(queued).failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(inFlight).failsWithin(Duration.ofSeconds(5));
+        verify(outbox, never()).saveAll(any());
+    }
+
+    /**
+     * Keeps each transaction's writes apart and publishes them only on commit. Like a real resource
+     * transaction manager it leaves the resource bound until cleanup, so writes made from
+     * {@code afterCommit} without a new transaction are lost.
+     */
+    static class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+        final List<Object> committed = new CopyOnWriteArrayList<>();
+
+        private static class Tx {
+            List<Object> writes;
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(Object rows) {
+            var writes = (List<Object>) TransactionSynchronizationManager.getResource(this);
+            if (writes == null) {
+                committed.add(rows); // auto-commit
+            } else {
+                writes.add(rows);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Object doGetTransaction() {
+            var tx = new Tx();
+            tx.writes = (List<Object>) TransactionSynchronizationManager.getResource(this);
+            return tx;
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return ((Tx) transaction).writes != null;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            ((Tx) transaction).writes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, ((Tx) transaction).writes);
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            ((Tx) transaction).writes = null;
+            return TransactionSynchronizationManager.unbindResource(this);
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+            TransactionSynchronizationManager.bindResource(this, suspendedResources);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            var writes = ((Tx) status.getTransaction()).writes;
+            committed.addAll(writes);
+            writes.clear(); // later writes to this transaction are never committed
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            ((Tx) status.getTransaction()).writes.clear();
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            TransactionSynchronizationManager.unbindResource(this);
+        }
+    }
+}
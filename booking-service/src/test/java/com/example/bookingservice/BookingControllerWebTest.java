@@ -0,0 +1,163 @@
+package com.example.bookingservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = BookingController.class)
+@AutoConfigureMockMvc(addFilters = false) // bypass security filters
+class BookingControllerWebTest {
+
+    @Autowired
+    MockMvc mvc;
+    @MockBean
+    BookingAppService app;
+    @MockBean
+    BookingRepository repository; // for the seed runner
+
+    @Test
+    void createBooking_happyPath_201() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        var end = LocalDate.parse("2025-01-12");
+        when(app.createBooking("deluxe-101", start, end))
+                .thenReturn(new Booking(1L, "deluxe-101", start, end, "CREATED"));
+
+        mvc.perform(post("/api/bookings")
+                .param("roomId", "deluxe-101")
+                .param("startDate", "2025-01-10")
+                .param("endDate", "2025-01-12"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void cancelBooking_200_or404() throws Exception {
+        when(app.cancelBooking(7L)).thenReturn(Optional.of(new Booking(7L, "deluxe-101",
+                LocalDate.parse("2025-01-10"), LocalDate.parse("2025-01-12"), "CANCELLED")));
+        when(app.cancelBooking(8L)).thenReturn(Optional.empty());
+
+        mvc.perform(post("/api/bookings/7/cancel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+        mvc.perform(post("/api/bookings/8/cancel"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createBooking_invalidDates_400() throws Exception {
+        mvc.perform(post("/api/bookings")
+                .param("roomId", "deluxe-101")
+                .param("startDate", "2025-01-12")
+                .param("endDate", "2025-01-10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createBooking_overbooked_409() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        var end = LocalDate.parse("2025-01-12");
+        when(app.createBooking("deluxe-101", start, end))
+                .thenThrow(new OverbookedException("deluxe-101", LocalDate.parse("2025-01-11")));
+
+        mvc.perform(post("/api/bookings")
+                .param("roomId", "deluxe-101")
+                .param("startDate", "2025-01-10")
+                .param("endDate", "2025-01-12"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void createBooking_groupCommitRejected_503() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        var end = LocalDate.parse("2025-01-12");
+        when(app.createBooking("deluxe-101", start, end))
+                .thenThrow(new RejectedExecutionException("Group commit stopped"));
+
+        mvc.perform(post("/api/bookings")
+                .param("roomId", "deluxe-101")
+                .param("startDate", "2025-01-10")
+                .param("endDate", "2025-01-12"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void createBookings_batch_201() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        var end = LocalDate.parse("2025-01-12");
+        when(app.createBookings(List.of(
+                new BookingRequest("deluxe-101", start, end),
+                new BookingRequest("deluxe-102", start, end))))
+                .thenReturn(List.of(
+                        new Booking(1L, "deluxe-101", start, end, "CREATED"),
+                        new Booking(2L, "deluxe-102", start, end, "CREATED")));
+
+        mvc.perform(post("/api/bookings/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"roomId":"deluxe-101","startDate":"2025-01-10","endDate":"2025-01-12"},
+                         {"roomId":"deluxe-102","startDate":"2025-01-10","endDate":"2025-01-12"}]
+                        """))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[1].id").value(2));
+    }
+
+    @Test
+    void createBookings_invalidDates_400() throws Exception {
+        mvc.perform(post("/api/bookings/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        [{"roomId":"deluxe-101","startDate":"2025-01-12","endDate":"2025-01-10"}]
+                        """))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_page_setsNextCursorHeader() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        when(app.byRoom("deluxe-101", null, null, "CREATED", null, 1))
+                .thenReturn(new BookingPage(
+                        List.of(new Booking(7L, "deluxe-101", start, start.plusDays(2), "CREATED")), "abc"));
+
+        mvc.perform(get("/api/bookings/room/deluxe-101")
+                .param("status", "CREATED")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BookingController.NEXT_CURSOR, "abc"))
+                .andExpect(jsonPath("$[0].id").value(7));
+    }
+
+    @Test
+    void list_withoutLimit_returnsEverything() throws Exception {
+        var start = LocalDate.parse("2025-01-10");
+        when(app.byRoom("deluxe-101", null, null, null, null, null))
+                .thenReturn(new BookingPage(List.of(
+                        new Booking(7L, "deluxe-101", start, start.plusDays(2), "CREATED"),
+                        new Booking(8L, "deluxe-101", start.plusDays(3), start.plusDays(4), "CREATED")), null));
+
+        mvc.perform(get("/api/bookings/room/deluxe-101"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(BookingController.NEXT_CURSOR))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void list_requiresRoomIdNotBlank_400() throws Exception {
+        mvc.perform(get("/api/bookings/room/  ")) // path variable blankish
+                .andExpect(status().isBadRequest()); // @NotBlank on the path variable (method validation)
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.bookingservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class CapacityReservationsTest {
+
+    private static final LocalDate START = LocalDate.now().plusDays(7);
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RedisScriptingCommands scripting = mock(RedisScriptingCommands.class);
+    private final List<String> firstKeys = new ArrayList<>(); // first key of each pipelined EVAL
+    private final CapacityReservations reservations = new CapacityReservations(redis, true, 5);
+
+    /** Runs each pipelined callback against a mock connection, answering its EVALs with {@code results}. */
+    @SuppressWarnings("unchecked")
+    private void pipelineReturns(List<Object> results) {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(scripting.eval(any(byte[].class), eq(ReturnType.INTEGER), anyInt(), any(byte[][].class))).thenAnswer(inv -> {
+            firstKeys.add(new String(inv.<byte[]>getArgument(3), StandardCharsets.UTF_8));
+            return null;
+        });
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            inv.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return results;
+        });
+    }
+
+    @Test
+    void reserveAll_isOnePipelineOfOneScriptPerStay() {
+        pipelineReturns(List.of(0L, 0L));
+
+        reservations.reserveAll(List.of(
+                new BookingRequest("r1", START, START.plusDays(1)),
+                new BookingRequest("r2", START, START)));
+
+        verify(redis, times(1)).executePipelined(any(RedisCallback.class));
+        // counters plus their :assumed marks
+        verify(scripting).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(4), any(byte[][].class));
+        verify(scripting).eval(any(byte[].class), eq(ReturnType.INTEGER), eq(2), any(byte[][].class));
+        assertThat(firstKeys).containsExactly(CapacityReservations.key("r1", START), CapacityReservations.key("r2", START));
+    }
+
+    @Test
+    void reserveAll_stayWithoutRoom_releasesTheReservedOnesAndThrows() {
+        pipelineReturns(List.of(0L, 2L, 0L));
+
+        assertThatThrownBy(() -> reservations.reserveAll(List.of(
+                new BookingRequest("r1", START, START),
+                new BookingRequest("r2", START, START.plusDays(2)),
+                new BookingRequest("r3", START, START))))
+                .isInstanceOf(OverbookedException.class)
+                .hasMessageContaining("r2").hasMessageContaining(START.plusDays(1).toString());
+
+        // second pipeline releases r1 and r3 only
+        verify(redis, times(2)).executePipelined(any(RedisCallback.class));
+        assertThat(firstKeys.subList(3, firstKeys.size()))
+                .containsExactly(CapacityReservations.key("r1", START), CapacityReservations.key("r3", START));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bookingservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroBatcherTest {
+
+    private final List<List<Integer>> handled = new CopyOnWriteArrayList<>();
+    private final List<Integer> abandoned = new CopyOnWriteArrayList<>();
+
+    @Test
+    void groupsWhatArrivesWithinTheWindow_upToMaxBatch() throws Exception {
+        var batcher = new MicroBatcher<Integer>("test", 16, 3, Duration.ofMillis(200), handled::add, abandoned::add);
+        batcher.start();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(batcher.offer(i)).isTrue();
+        }
+        batcher.stop(Duration.ofSeconds(5));
+
+        assertThat(handled).containsExactly(List.of(1, 2, 3), List.of(4, 5));
+        assertThat(abandoned).isEmpty();
+    }
+
+    @Test
+    void refusesItemsOnceStopped() throws Exception {
+        var batcher = new MicroBatcher<Integer>("test", 16, 3, Duration.ZERO, handled::add, abandoned::add);
+        batcher.start();
+        batcher.stop(Duration.ofSeconds(5));
+
+        assertThat(batcher.isRunning()).isFalse();
+        assertThat(batcher.offer(1)).isFalse();
+        assertThat(batcher.put(2, Duration.ofSeconds(1))).isFalse();
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    void abandonsTheInFlightGroupAndTheQueue_whenTheWorkerDoesNotDrainInTime() throws Exception {
+        var inHandler = new CountDownLatch(1);
+        var batcher = new MicroBatcher<Integer>("test", 16, 2, Duration.ZERO, group -> {
+            inHandler.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, abandoned::add);
+        batcher.start();
+        batcher.offer(1);
+        assertThat(inHandler.await(5, TimeUnit.SECONDS)).isTrue();
+        batcher.offer(2);
+        batcher.offer(3);
+
+        batcher.stop(Duration.ofMillis(50));
+        Thread.sleep(200); // the interrupted worker abandons its own group on the way out
+
+        assertThat(abandoned).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(batcher.size()).isZero();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bookingservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionMaintenanceTest {
+
+    @Test
+    void createsCurrentMonthAndMonthsAhead_acrossTheYearEnd() {
+        assertThat(PartitionMaintenance.monthsToCreate(YearMonth.of(2025, 12), 13))
+                .hasSize(14)
+                .startsWith(YearMonth.of(2025, 12), YearMonth.of(2026, 1))
+                .endsWith(YearMonth.of(2027, 1));
+    }
+
+    @Test
+    void keepsEveryMonth_byDefault() {
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2015, 1), YearMonth.of(2025, 6), 0)).isFalse();
+    }
+
+    @Test
+    void expiresOnlyMonthsBeforeTheRetainedOnes_whenRetentionIsSet() {
+        YearMonth current = YearMonth.of(2025, 6);
+
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2024, 6), current, 12)).isFalse();
+        assertThat(PartitionMaintenance.expired(YearMonth.of(2024, 5), current, 12)).isTrue();
+    }
+
+    @Test
+    void targetsTheBookingTable() {
+        assertThat(PartitionMaintenance.SCHEMA + "." + PartitionMaintenance.TABLE).isEqualTo("booking.booking");
+        assertThat(PartitionMaintenance.COLUMN).isEqualTo("start_date");
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.bookingservice;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamRetentionTest {
+
+    @Test
+    void compare_isNumericOnMillisThenSequence() {
+        assertThat(StreamRetention.compare("9-0", "10-0")).isNegative(); // not lexicographic
+        assertThat(StreamRetention.compare("5-10", "5-9")).isPositive();
+        assertThat(StreamRetention.compare("5-3", "5-3")).isZero();
+        assertThat(StreamRetention.compare("5", "5-0")).isZero();
+    }
+
+    @Test
+    void groupFloor_isTheOldestPendingEntry_elseLastDelivered() {
+        assertThat(StreamRetention.groupFloor("1700000000500-0", "1700000000100-3")).isEqualTo("1700000000100-3");
+        assertThat(StreamRetention.groupFloor("1700000000500-0", null)).isEqualTo("1700000000500-0");
+    }
+
+    @Test
+    void floorAcrossGroups_isTheSmallestGroupFloor() {
+        String floor = null;
+        floor = StreamRetention.min(floor, StreamRetention.groupFloor("200-0", null));
+        floor = StreamRetention.min(floor, StreamRetention.groupFloor("1000-0", "99-1"));
+        floor = StreamRetention.min(floor, StreamRetention.groupFloor("150-0", null));
+
+        assertThat(floor).isEqualTo("99-1");
+    }
+
+    @Test
+    void minId_movesTheFloorBackByTheMargin() {
+        assertThat(StreamRetention.minId("1700000600000-7", 600_000)).isEqualTo("1700000000000-0");
+        assertThat(StreamRetention.minId("1700000600000-7", 0)).isEqualTo("1700000600000-7");
+        assertThat(StreamRetention.minId("1000-0", 600_000)).isEqualTo("0-0");
+    }
+}
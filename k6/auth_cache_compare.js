@@ -0,0 +1,33 @@
+import http from "k6/http";
+import { check } from "k6";
+
+// Measures the cost of HTTP Basic authentication on a cheap read, with and without the
+// credential cache. Run once per setting against the same stack and compare the summaries:
+//   docker compose up -d --build                              (cache on, the default)
+//   AUTH_CACHE_ENABLED=false docker compose up -d --build     (BCrypt on every request)
+// Also watch container CPU (docker stats): without the cache BCrypt dominates it.
+const AVAIL = __ENV.BASE_URL_AVAIL || "http://localhost:8086";
+const CACHE = __ENV.CACHE || "unlabelled";
+
+export const options = {
+  scenarios: {
+    steady: {
+      executor: "constant-vus",
+      vus: 50,
+      duration: "60s",
+    },
+  },
+  tags: { cache: CACHE },
+  summaryTrendStats: ["avg", "p(50)", "p(95)", "p(99)", "max"],
+};
+
+const auth = "Basic dXNlcjpwYXNzd29yZA=="; // user:password
+
+export default function () {
+  const room = `room-${Math.floor(Math.random() * 50)}`;
+  const r = http.get(
+    `${AVAIL}/api/availability/${room}?startDate=2025-03-01&endDate=2025-03-03`,
+    { headers: { Authorization: auth }, tags: { name: "GET /api/availability/{roomId}" } }
+  );
+  check(r, { "avail 200": (res) => res.status === 200 });
+}
@@ -0,0 +1,47 @@
+import http from "k6/http";
+import { check } from "k6";
+
+// Compares platform-thread vs virtual-thread mode under high concurrency.
+// Run once per mode against the same stack and compare the summaries, e.g.:
+//   docker compose up -d --build                                  (platform threads)
+//   SPRING_PROFILES_ACTIVE=vthreads docker compose up -d --build  (virtual threads)
+const BOOKING = __ENV.BASE_URL_BOOKING || "http://localhost:8085";
+const AVAIL = __ENV.BASE_URL_AVAIL || "http://localhost:8086";
+const MODE = __ENV.MODE || "unlabelled";
+
+export const options = {
+  scenarios: {
+    ramp: {
+      executor: "ramping-vus",
+      startVUs: 0,
+      stages: [
+        { duration: "20s", target: 100 },
+        { duration: "40s", target: 400 }, // well past the default 200 Tomcat threads
+        { duration: "20s", target: 0 },
+      ],
+    },
+  },
+  tags: { mode: MODE },
+  summaryTrendStats: ["avg", "p(50)", "p(95)", "p(99)", "max"],
+};
+
+const auth = "Basic dXNlcjpwYXNzd29yZA=="; // user:password
+
+export default function () {
+  const room = `room-${Math.floor(Math.random() * 50)}`;
+  const start = "2025-03-01";
+  const end = "2025-03-03";
+
+  const b = http.post(
+    `${BOOKING}/api/bookings?roomId=${room}&startDate=${start}&endDate=${end}`,
+    null,
+    { headers: { Authorization: auth }, tags: { name: "POST /api/bookings" } }
+  );
+  check(b, { "booking 201": (r) => r.status === 201 });
+
+  const a = http.get(
+    `${AVAIL}/api/availability/${room}?startDate=${start}&endDate=${end}`,
+    { headers: { Authorization: auth }, tags: { name: "GET /api/availability" } }
+  );
+  check(a, { "availability 200": (r) => r.status === 200 });
+}